@@ -0,0 +1,384 @@
+package com.cs0x7f.min2phase;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+
+/**
+ * A cube read with uncertain facelet colors, e.g. red vs orange under bad light. Every facelet gets one or more
+ * candidate colors with a confidence, the legal cube states are enumerated from the most to the least likely:
+ *
+ *     AmbiguousCube cube = new AmbiguousCube(scanned);
+ *     cube.addCandidate(17, 'O', 0.4);    // facelet R9 may be orange as well
+ *     String facelets = cube.mostLikely(100000);
+ *
+ * The likelihood of a state is the product of the confidences of its facelet colors, confidences need not add up
+ * to 1. Colors are named by characters as in Search.solution(), every center takes its most likely candidate, the 6
+ * centers must differ. The search runs over the 8 corner and 12 edge positions, a color triple or pair that is no
+ * cubie, a cubie used twice, a twist, flip or parity error is pruned as soon as it is known.
+ */
+public class AmbiguousCube {
+
+    private static final int N_POS = 20; // 8 corners, then 12 edges
+
+    private final char[][] colors = new char[54][];
+    private final double[][] confidences = new double[54][];
+
+    public AmbiguousCube() {
+        for (int i = 0; i < 54; i++) {
+            colors[i] = new char[0];
+            confidences[i] = new double[0];
+        }
+    }
+
+    /**
+     * Every facelet of facelets is a candidate with confidence 1, more can be added with addCandidate().
+     */
+    public AmbiguousCube(String facelets) {
+        this();
+        for (int i = 0; i < 54; i++) {
+            addCandidate(i, facelets.charAt(i), 1);
+        }
+    }
+
+    /**
+     * Adds color as a candidate of the facelet (0..53 in the order of Search.solution()), or replaces its confidence.
+     */
+    public void addCandidate(int facelet, char color, double confidence) {
+        if (!(confidence > 0)) {
+            throw new IllegalArgumentException("confidence " + confidence);
+        }
+        char[] c = colors[facelet];
+        for (int i = 0; i < c.length; i++) {
+            if (c[i] == color) {
+                confidences[facelet][i] = confidence;
+                return;
+            }
+        }
+        colors[facelet] = Arrays.copyOf(c, c.length + 1);
+        colors[facelet][c.length] = color;
+        confidences[facelet] = Arrays.copyOf(confidences[facelet], c.length + 1);
+        confidences[facelet][c.length] = confidence;
+    }
+
+    /**
+     * This method returns the product of the confidences of the colors of facelets, 0 if one of them is not a
+     * candidate
+     */
+    public double likelihood(String facelets) {
+        double p = 1;
+        for (int i = 0; i < 54; i++) {
+            p *= confidence(i, facelets.charAt(i));
+        }
+        return p;
+    }
+
+    private double confidence(int facelet, char color) {
+        for (int i = 0; i < colors[facelet].length; i++) {
+            if (colors[facelet][i] == color) {
+                return confidences[facelet][i];
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Enumerates the legal states as facelet strings, most likely first. The candidates must not change during the
+     * iteration.
+     *
+     * @param maxNodes
+     *      limit of the search nodes, the iteration ends early when it is exceeded.
+     */
+    public Iterator<String> legalStates(long maxNodes) {
+        return new StateIterator(maxNodes, 0);
+    }
+
+    /**
+     * Same as legalStates(long), only states with a likelihood of at least minLikelihood are enumerated.
+     */
+    public Iterator<String> legalStates(long maxNodes, double minLikelihood) {
+        return new StateIterator(maxNodes, minLikelihood);
+    }
+
+    /**
+     * This method returns the most likely legal state, null if there is none or it is not found within maxNodes
+     */
+    public String mostLikely(long maxNodes) {
+        Iterator<String> it = legalStates(maxNodes);
+        return it.hasNext() ? it.next() : null;
+    }
+
+    /**
+     * Solves the most likely legal state with search, see Search.solution() for the parameters.
+     * @return the solution, or "Error 1" if no legal state is found within maxNodes.
+     */
+    public String solution(Search search, int maxDepth, long probeMax, long probeMin, int verbose, long maxNodes) {
+        String facelets = mostLikely(maxNodes);
+        return facelets == null ? "Error 1" : search.solution(facelets, maxDepth, probeMax, probeMin, verbose);
+    }
+
+    // one way to fill a corner or edge position: the cubie and orientation as in CubieCube.ca / ea, its colors
+    private static class Option {
+        final int cubie;
+        final double score;
+        final byte[] colors;
+
+        Option(int cubie, double score, byte[] colors) {
+            this.cubie = cubie;
+            this.score = score;
+            this.colors = colors;
+        }
+    }
+
+    private static class Node {
+        final Node parent;
+        final Option option;
+        final int pos; // positions filled
+        final double score;
+        final double bound;
+        final int cornMask;
+        final int edgeMask;
+        final int twist;
+        final int flip;
+
+        Node(Node parent, Option option, int pos, double score, double bound, int cornMask, int edgeMask, int twist,
+             int flip) {
+            this.parent = parent;
+            this.option = option;
+            this.pos = pos;
+            this.score = score;
+            this.bound = bound;
+            this.cornMask = cornMask;
+            this.edgeMask = edgeMask;
+            this.twist = twist;
+            this.flip = flip;
+        }
+    }
+
+    private class StateIterator implements Iterator<String> {
+
+        private final long maxNodes;
+        private final double minScore;
+        private long nodes;
+        private final char[] centerChars = new char[6];
+        private final Option[][] options = new Option[N_POS][];
+        // best[p]: the highest score of positions p.. without constraints, which makes the search order exact
+        private final double[] best = new double[N_POS + 1];
+        private final PriorityQueue<Node> queue = new PriorityQueue<Node>(64, new Comparator<Node>() {
+            @Override
+            public int compare(Node a, Node b) {
+                int cmp = Double.compare(b.bound, a.bound);
+                // among equally likely nodes the deepest first, which completes states sooner
+                return cmp != 0 ? cmp : b.pos - a.pos;
+            }
+        });
+        private String next;
+
+        StateIterator(long maxNodes, double minLikelihood) {
+            this.maxNodes = maxNodes;
+            // a little slack for the rounding of the sums of logarithms
+            this.minScore = Math.log(minLikelihood) - 1e-9;
+            double centerScore = 0;
+            for (int i = 0; i < 6; i++) {
+                int f = Util.centerFacelet[i];
+                int k = bestCandidate(f);
+                if (k < 0) {
+                    return;
+                }
+                centerChars[i] = colors[f][k];
+                centerScore += Math.log(confidences[f][k]);
+                for (int j = 0; j < i; j++) {
+                    if (centerChars[j] == centerChars[i]) {
+                        return;
+                    }
+                }
+            }
+            for (int p = 0; p < N_POS; p++) {
+                options[p] = p < 8 ? cubieOptions(Util.cornerFacelet[p], Util.cornerLookup)
+                        : cubieOptions(Util.edgeFacelet[p - 8], Util.edgeLookup);
+            }
+            for (int p = N_POS - 1; p >= 0; p--) {
+                best[p] = best[p + 1] + (options[p].length == 0 ? Double.NEGATIVE_INFINITY : options[p][0].score);
+            }
+            if (best[0] > Double.NEGATIVE_INFINITY && centerScore + best[0] >= minScore) {
+                queue.add(new Node(null, null, 0, centerScore, centerScore + best[0], 0, 0, 0, 0));
+            }
+        }
+
+        private int bestCandidate(int facelet) {
+            int k = -1;
+            for (int i = 0; i < colors[facelet].length; i++) {
+                if (k < 0 || confidences[facelet][i] > confidences[facelet][k]) {
+                    k = i;
+                }
+            }
+            return k;
+        }
+
+        // all candidate color combinations of the facelets that form a cubie, best first
+        private Option[] cubieOptions(byte[] facelets, byte[] lookup) {
+            List<Option> list = new ArrayList<Option>();
+            int n = facelets.length;
+            byte[] col = new byte[n];
+            double[] score = new double[n + 1];
+            int[] k = new int[n + 1];
+            int d = 0;
+            k[0] = -1;
+            // depth-first over the candidates of the n facelets
+            while (d >= 0) {
+                int f = facelets[d];
+                if (++k[d] == colors[f].length) {
+                    d--;
+                    continue;
+                }
+                col[d] = (byte) centerIndex(colors[f][k[d]]);
+                if (col[d] < 0) {
+                    continue;
+                }
+                score[d + 1] = score[d] + Math.log(confidences[f][k[d]]);
+                if (d + 1 < n) {
+                    k[++d] = -1;
+                    continue;
+                }
+                int idx = n == 3 ? col[0] * 36 + col[1] * 6 + col[2] : col[0] * 6 + col[1];
+                if (lookup[idx] >= 0) {
+                    list.add(new Option(lookup[idx], score[n], col.clone()));
+                }
+            }
+            Collections.sort(list, new Comparator<Option>() {
+                @Override
+                public int compare(Option a, Option b) {
+                    return Double.compare(b.score, a.score);
+                }
+            });
+            return list.toArray(new Option[list.size()]);
+        }
+
+        private int centerIndex(char c) {
+            for (int i = 0; i < 6; i++) {
+                if (centerChars[i] == c) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (next == null) {
+                next = advance();
+            }
+            return next != null;
+        }
+
+        @Override
+        public String next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            String ret = next;
+            next = null;
+            return ret;
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+
+        private String advance() {
+            Node node;
+            while ((node = queue.poll()) != null) {
+                if (node.pos == N_POS) {
+                    return toFacelets(node);
+                }
+                if (++nodes > maxNodes) {
+                    queue.clear();
+                    return null;
+                }
+                expand(node);
+            }
+            return null;
+        }
+
+        private void expand(Node node) {
+            int p = node.pos;
+            for (Option o : options[p]) {
+                int cornMask = node.cornMask;
+                int edgeMask = node.edgeMask;
+                int twist = node.twist;
+                int flip = node.flip;
+                if (p < 8) {
+                    if ((cornMask >> (o.cubie & 7) & 1) != 0) {
+                        continue;
+                    }
+                    cornMask |= 1 << (o.cubie & 7);
+                    twist += o.cubie >> 3;
+                    if (p == 7 && twist % 3 != 0) {
+                        continue;
+                    }
+                } else {
+                    if ((edgeMask >> (o.cubie >> 1) & 1) != 0) {
+                        continue;
+                    }
+                    edgeMask |= 1 << (o.cubie >> 1);
+                    flip ^= o.cubie & 1;
+                    if (p == N_POS - 1 && flip != 0) {
+                        continue;
+                    }
+                }
+                double score = node.score + o.score;
+                if (score + best[p + 1] < minScore) {
+                    break; // the options are sorted, the remaining ones are even less likely
+                }
+                Node child = new Node(node, o, p + 1, score, score + best[p + 1], cornMask, edgeMask, twist, flip);
+                if (p == N_POS - 1 && !isEvenParity(child)) {
+                    continue;
+                }
+                queue.add(child);
+            }
+        }
+
+        private boolean isEvenParity(Node node) {
+            byte[] corn = new byte[8];
+            byte[] edge = new byte[12];
+            for (Node n = node; n.option != null; n = n.parent) {
+                if (n.pos <= 8) {
+                    corn[n.pos - 1] = (byte) (n.option.cubie & 7);
+                } else {
+                    edge[n.pos - 9] = (byte) (n.option.cubie >> 1);
+                }
+            }
+            return (parity(corn) ^ parity(edge)) == 0;
+        }
+
+        private int parity(byte[] perm) {
+            int p = 0;
+            for (int i = 0; i < perm.length; i++) {
+                for (int j = i + 1; j < perm.length; j++) {
+                    p ^= perm[i] > perm[j] ? 1 : 0;
+                }
+            }
+            return p;
+        }
+
+        private String toFacelets(Node node) {
+            char[] f = new char[54];
+            for (int i = 0; i < 6; i++) {
+                f[Util.centerFacelet[i]] = centerChars[i];
+            }
+            for (Node n = node; n.option != null; n = n.parent) {
+                byte[] facelets = n.pos <= 8 ? Util.cornerFacelet[n.pos - 1] : Util.edgeFacelet[n.pos - 9];
+                for (int i = 0; i < facelets.length; i++) {
+                    f[facelets[i]] = centerChars[n.option.colors[i]];
+                }
+            }
+            return new String(f);
+        }
+    }
+}
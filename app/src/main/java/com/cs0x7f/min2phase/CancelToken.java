@@ -0,0 +1,18 @@
+package com.cs0x7f.min2phase;
+
+/**
+ * Stops a running Search from another thread, see Search.solution(String, int, long, long, int, long, CancelToken).
+ * A token can be shared by several searches and stays cancelled once cancel() has been called.
+ */
+public class CancelToken {
+
+    private volatile boolean cancelled;
+
+    public void cancel() {
+        cancelled = true;
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+}
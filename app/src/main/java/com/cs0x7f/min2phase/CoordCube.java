@@ -39,6 +39,14 @@ class CoordCube {
     static int[] EPermCCombPrun = new int[N_COMB * N_PERM_SYM / 8];
 
     static void init() {
+        initSearchable();
+        if (Search.USE_TWIST_FLIP_PRUN) {
+            initTwistFlipPrun();
+        }
+    }
+
+    // all tables but TwistFlipPrun, which is only looked up by nodes with useTwistFlipPrun set
+    static void initSearchable() {
         CubieCube.initPermSym2Raw();
 
         initCPermMove();
@@ -56,9 +64,6 @@ class CoordCube {
         initTwistMove();
         initUDSliceMoveConj();
 
-        if (Search.USE_TWIST_FLIP_PRUN) {
-            initTwistFlipPrun();
-        }
         initSliceTwistPrun();
         initSliceFlipPrun();
     }
@@ -367,6 +372,8 @@ class CoordCube {
     int fsym;
     int slice;
     int prun;
+    // set by Search once TwistFlipPrun is built
+    boolean useTwistFlipPrun;
 
     CoordCube() { }
 
@@ -386,7 +393,7 @@ class CoordCube {
                                   twist * N_SLICE + UDSliceConj[slice & 0x1ff][tsym]),
                        getPruning(UDSliceFlipPrun,
                                   flip * N_SLICE + UDSliceConj[slice & 0x1ff][fsym])),
-                   Search.USE_TWIST_FLIP_PRUN ? getPruning(TwistFlipPrun,
+                   Search.USE_TWIST_FLIP_PRUN && useTwistFlipPrun ? getPruning(TwistFlipPrun,
                            twist << 11 | CubieCube.FlipS2RF[flip << 3 | CubieCube.Sym8MultInv[fsym << 3 | tsym]]) : 0);
     }
 
@@ -423,7 +430,7 @@ class CoordCube {
                                   twist * N_SLICE + UDSliceConj[slice][tsym]),
                        getPruning(UDSliceFlipPrun,
                                   flip * N_SLICE + UDSliceConj[slice][fsym])),
-                   Search.USE_TWIST_FLIP_PRUN ? getPruning(TwistFlipPrun,
+                   Search.USE_TWIST_FLIP_PRUN && useTwistFlipPrun ? getPruning(TwistFlipPrun,
                            twist << 11 | CubieCube.FlipS2RF[flip << 3 | CubieCube.Sym8MultInv[fsym << 3 | tsym]]) : 0);
         return prun;
     }
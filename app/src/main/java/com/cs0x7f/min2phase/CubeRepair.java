@@ -0,0 +1,75 @@
+package com.cs0x7f.min2phase;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Repair suggestions for facelet strings that Search.solution() rejects with Error 1 to 6: the solvable states that
+ * differ from the string in the fewest facelets, fewest first. The centers are never changed.
+ *
+ * This is AmbiguousCube with every facelet read right at confidence 1 and each other color at CHANGE_CONFIDENCE, so
+ * its likelihood order is the order of the number of changes.
+ */
+public class CubeRepair {
+
+    // small enough that any number of kept facelets outweighs one more change
+    private static final double CHANGE_CONFIDENCE = 1e-3;
+
+    private CubeRepair() {
+    }
+
+    /**
+     * Finds up to maxResults solvable facelet strings with at most maxChanges facelets changed, fewest changes first.
+     * States with the same number of changes come in no particular order. An already solvable input is returned
+     * first, as the result with 0 changes.
+     *
+     * @param maxNodes
+     *      limit of the search nodes, see AmbiguousCube.legalStates(). Fewer results are returned when it is exceeded.
+     */
+    public static List<String> suggest(String facelets, int maxChanges, int maxResults, long maxNodes) {
+        List<String> ret = new ArrayList<String>();
+        if (facelets == null || facelets.length() < 54) {
+            return ret;
+        }
+        AmbiguousCube cube = new AmbiguousCube(facelets);
+        for (int i = 0; i < 54; i++) {
+            if (i % 9 == 4) {
+                continue;
+            }
+            for (int c = 0; c < 6; c++) {
+                char color = facelets.charAt(Util.centerFacelet[c]);
+                if (color != facelets.charAt(i)) {
+                    cube.addCandidate(i, color, CHANGE_CONFIDENCE);
+                }
+            }
+        }
+        Iterator<String> it = cube.legalStates(maxNodes, Math.pow(CHANGE_CONFIDENCE, maxChanges));
+        while (ret.size() < maxResults && it.hasNext()) {
+            ret.add(it.next());
+        }
+        return ret;
+    }
+
+    /**
+     * This method returns the indices of the facelets in which from and to differ
+     */
+    public static int[] changes(String from, String to) {
+        int n = 0;
+        int[] diff = new int[54];
+        for (int i = 0; i < 54; i++) {
+            if (from.charAt(i) != to.charAt(i)) {
+                diff[n++] = i;
+            }
+        }
+        return Arrays.copyOf(diff, n);
+    }
+
+    /**
+     * This method returns the facelet name of a facelet index, e.g. "R9" for 17
+     */
+    public static String faceletName(int facelet) {
+        return "URFDLB".charAt(facelet / 9) + Integer.toString(facelet % 9 + 1);
+    }
+}
@@ -67,6 +67,10 @@ class CubieCube {
 
     static CubieCube urf1 = new CubieCube(2531, 1373, 67026819, 1367);
     static CubieCube urf2 = new CubieCube(2089, 1906, 322752913, 2040);
+    static long urf1Corn = urf1.getCornPacked();
+    static long urf1Edge = urf1.getEdgePacked();
+    static long urf2Corn = urf2.getCornPacked();
+    static long urf2Edge = urf2.getEdgePacked();
     static byte[][] urfMove = new byte[][] {
         {0, 1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12, 13, 14, 15, 16, 17},
         {6, 7, 8, 0, 1, 2, 3, 4, 5, 15, 16, 17, 9, 10, 11, 12, 13, 14},
@@ -79,6 +83,7 @@ class CubieCube {
     byte[] ca = {0, 1, 2, 3, 4, 5, 6, 7};
     byte[] ea = {0, 2, 4, 6, 8, 10, 12, 14, 16, 18, 20, 22};
     CubieCube temps = null;
+    CubieCube symTemp = null;
 
     CubieCube() {
     }
@@ -113,12 +118,8 @@ class CubieCube {
     }
 
     void copy(CubieCube c) {
-        for (int i = 0; i < 8; i++) {
-            this.ca[i] = c.ca[i];
-        }
-        for (int i = 0; i < 12; i++) {
-            this.ea[i] = c.ea[i];
-        }
+        System.arraycopy(c.ca, 0, this.ca, 0, 8);
+        System.arraycopy(c.ea, 0, this.ea, 0, 12);
     }
 
     void invCubieCube() {
@@ -200,6 +201,139 @@ class CubieCube {
         EdgeMult(temps, urf1, this);
     }
 
+    // ********************************************* Packed representation *********************************************
+    // Corners: ca[i] in bits [8i, 8i + 8) of a long. Edges: ea[i] in bits [5i, 5i + 5) of a long.
+    // Equality and copies are single long operations, products are computed with shifts and
+    // lane-parallel (SWAR) arithmetic instead of array lookups.
+
+    static final long CORN_LANE_LOW = 0x0101010101010101L;
+    static final long CORN_PERM_MASK = CORN_LANE_LOW * 7;
+    static final long EDGE_FLIP_MASK = 0x84210842108421L;
+
+    /**
+     * Packed corners and edges of the 16 symmetries, and whether the symmetry is a mirror (all corner ori 3).
+     */
+    static long[] CubeSymCorn = new long[16];
+    static long[] CubeSymEdge = new long[16];
+    static boolean[] CubeSymMirror = new boolean[16];
+
+    long getCornPacked() {
+        long c = 0;
+        for (int i = 7; i >= 0; i--) {
+            c = c << 8 | ca[i];
+        }
+        return c;
+    }
+
+    long getEdgePacked() {
+        long e = 0;
+        for (int i = 11; i >= 0; i--) {
+            e = e << 5 | ea[i];
+        }
+        return e;
+    }
+
+    void setCornPacked(long c) {
+        for (int i = 0; i < 8; i++) {
+            ca[i] = (byte) (c >>> (i << 3));
+        }
+    }
+
+    void setEdgePacked(long e) {
+        for (int i = 0; i < 12; i++) {
+            ea[i] = (byte) (e >>> (i * 5) & 0x1f);
+        }
+    }
+
+    /**
+     * prod = a * b, packed corners. Same as CornMult.
+     */
+    static long packedCornMult(long a, long b) {
+        long g = 0;
+        for (int i = 0; i < 64; i += 8) {
+            g |= (a >>> ((b >>> i & 7) << 3) & 0xff) << i;
+        }
+        //Mirrored orientations (3..5) only occur with symmetries, no need for a fast path
+        if (((a | b) & 0x2020202020202020L | (a & a >>> 1 | b & b >>> 1) & 0x0808080808080808L) != 0) {
+            long prod = 0;
+            for (int i = 0; i < 64; i += 8) {
+                int oriA = (int) (g >>> i + 3 & 7);
+                int oriB = (int) (b >>> i + 3 & 7);
+                int ori = oriA;
+                ori += (oriA < 3) ? oriB : 6 - oriB;
+                ori %= 3;
+                if ((oriA >= 3) ^ (oriB >= 3)) {
+                    ori += 3;
+                }
+                prod |= (g >>> i & 7 | ori << 3) << i;
+            }
+            return prod;
+        }
+        long ori = (g >>> 3 & CORN_LANE_LOW * 3) + (b >>> 3 & CORN_LANE_LOW * 3);
+        ori -= (ori + CORN_LANE_LOW >>> 2 & CORN_LANE_LOW) * 3; //(oriA + oriB) % 3 in every lane
+        return g & CORN_PERM_MASK | ori << 3;
+    }
+
+    /**
+     * prod = a * b, packed edges. Same as EdgeMult.
+     */
+    static long packedEdgeMult(long a, long b) {
+        long g = 0;
+        for (int i = 0; i < 60; i += 5) {
+            g |= (a >>> (b >>> i + 1 & 0xf) * 5 & 0x1f) << i;
+        }
+        return g ^ b & EDGE_FLIP_MASK;
+    }
+
+    /**
+     * S_idx^-1 * a * S_idx, packed corners. Same as CornConjugate.
+     */
+    static long packedCornConjugate(long a, int idx) {
+        long s = CubeSymCorn[idx];
+        long sinv = CubeSymCorn[SymInv[idx]];
+        long p = 0;
+        long ori = 0;
+        for (int i = 0; i < 64; i += 8) {
+            long g = a >>> ((s >>> i & 7) << 3);
+            p |= (sinv >>> ((g & 7) << 3) & 7) << i;
+            ori |= (g >>> 3 & 3) << i;
+        }
+        if (CubeSymMirror[idx]) {
+            ori = (ori & CORN_LANE_LOW) << 1 | ori >>> 1 & CORN_LANE_LOW; //0->0, 1->2, 2->1
+        }
+        return p | ori << 3;
+    }
+
+    /**
+     * S_idx^-1 * a * S_idx, packed edges. Same as EdgeConjugate.
+     */
+    static long packedEdgeConjugate(long a, int idx) {
+        long s = CubeSymEdge[idx];
+        long sinv = CubeSymEdge[SymInv[idx]];
+        long b = 0;
+        for (int i = 0; i < 60; i += 5) {
+            long g = a >>> (s >>> i + 1 & 0xf) * 5;
+            b |= ((sinv >>> (g >>> 1 & 0xf) * 5 & 0x1f) ^ (g & 1)) << i;
+        }
+        return b ^ s & EDGE_FLIP_MASK;
+    }
+
+    static int packedGetFlip(long e) {
+        int idx = 0;
+        for (int i = 0; i < 55; i += 5) {
+            idx = idx << 1 | (int) (e >>> i) & 1;
+        }
+        return idx;
+    }
+
+    static int packedGetTwist(long c) {
+        int idx = 0;
+        for (int i = 0; i < 56; i += 8) {
+            idx += (idx << 1) + (int) (c >>> i + 3 & 3);
+        }
+        return idx;
+    }
+
     // ********************************************* Get and set coordinates *********************************************
     // XSym : Symmetry Coordnate of X. MUST be called after initialization of ClassIndexToRepresentantArrays.
 
@@ -411,35 +545,89 @@ class CubieCube {
         return 0;// cube ok
     }
 
+    /**
+     * Bit i (i < 48) set: this == S_i^-1 * this * S_i. Bit 48 set: this^-1 is conjugate to this.
+     * Once the conjugation tables are built, every symmetry is first checked on CComb and UDSlice
+     * (the latter for the 8 symmetries it has a table for), full conjugation only runs on a match.
+     */
     long selfSymmetry() {
-        CubieCube c = new CubieCube(this);
-        CubieCube d = new CubieCube();
+        if (Search.initStage == Search.INIT_NONE || Search.EXTRA_PRUN_LEVEL > 0) {
+            return selfSymmetryFull();
+        }
+        if (symTemp == null) {
+            symTemp = new CubieCube();
+        }
+        CubieCube c = symTemp;
+        long corn = getCornPacked();
+        long edge = getEdgePacked();
+        int comb = getCComb();
+        int slice = getUDSlice() & 0x1ff;
+        long cc = corn;
+        long ce = edge;
         long sym = 0L;
-        for (int i = 0; i < 48; i++) {
-            CornConjugate(c, SymInv[i % 16], d);
-            if (d.equalsCorn(this)) {
-                EdgeConjugate(c, SymInv[i % 16], d);
-                if (d.equalsEdge(this)) {
-                    sym |= 1L << i;
+        for (int inv = 0; inv < 2; inv++) {
+            for (int urf = 0; urf < 48; urf += 16) {
+                if (urf != 0) {
+                    //S_urf^-1 * c * S_urf, same as URFConjugate()
+                    cc = packedCornMult(packedCornMult(urf2Corn, cc), urf1Corn);
+                    ce = packedEdgeMult(packedEdgeMult(urf2Edge, ce), urf1Edge);
                 }
+                c.setCornPacked(cc);
+                c.setEdgePacked(ce);
+                char[] combConj = CoordCube.CCombConj[c.getCComb()];
+                char[] sliceConj = CoordCube.UDSliceConj[c.getUDSlice() & 0x1ff];
+                for (int k = 0; k < 16; k++) {
+                    if (combConj[k] != comb || (k & 1) == 0 && sliceConj[k >> 1] != slice) {
+                        continue;
+                    }
+                    if (packedCornConjugate(cc, SymInv[k]) == corn && packedEdgeConjugate(ce, SymInv[k]) == edge) {
+                        if (inv == 1) {
+                            return sym | 1L << 48;
+                        }
+                        sym |= 1L << (urf + k);
+                    }
+                }
+            }
+            if (inv == 0) {
+                c.copy(this);
+                c.invCubieCube();
+                cc = c.getCornPacked();
+                ce = c.getEdgePacked();
             }
-            if (i % 16 == 15) {
-                c.URFConjugate();
+        }
+        return sym;
+    }
+
+    /**
+     * Same as selfSymmetry() without the coordinate prefilter, needed while the tables are built.
+     */
+    long selfSymmetryFull() {
+        CubieCube c = new CubieCube(this);
+        long corn = getCornPacked();
+        long edge = getEdgePacked();
+        long sym = 0L;
+        for (int urf = 0; urf < 48; urf += 16) {
+            long cc = c.getCornPacked();
+            long ce = c.getEdgePacked();
+            for (int k = 0; k < 16; k++) {
+                if (packedCornConjugate(cc, SymInv[k]) == corn && packedEdgeConjugate(ce, SymInv[k]) == edge) {
+                    sym |= 1L << (urf + k);
+                }
             }
+            c.URFConjugate();
         }
         c.invCubieCube();
-        for (int i = 0; i < 48; i++) {
-            CornConjugate(c, SymInv[i % 16], d);
-            if (d.equalsCorn(this)) {
-                EdgeConjugate(c, SymInv[i % 16], d);
-                if (d.equalsEdge(this)) {
+        search:
+        for (int urf = 0; urf < 48; urf += 16) {
+            long cc = c.getCornPacked();
+            long ce = c.getEdgePacked();
+            for (int k = 0; k < 16; k++) {
+                if (packedCornConjugate(cc, SymInv[k]) == corn && packedEdgeConjugate(ce, SymInv[k]) == edge) {
                     sym |= 1L << 48;
-                    break;
+                    break search;
                 }
             }
-            if (i % 16 == 15) {
-                c.URFConjugate();
-            }
+            c.URFConjugate();
         }
         return sym;
     }
@@ -464,7 +652,11 @@ class CubieCube {
 
     // ********************************************* Initialization functions *********************************************
 
-    static void initMove() {
+    // also called by SolutionVerifier, which does not need the other tables
+    static synchronized void initMove() {
+        if (moveCube[17] != null) {
+            return;
+        }
         moveCube[0] = new CubieCube(15120, 0, 119750400, 0);
         moveCube[3] = new CubieCube(21021, 1494, 323403417, 0);
         moveCube[6] = new CubieCube(8064, 1236, 29441808, 550);
@@ -520,11 +712,16 @@ class CubieCube {
                 t = d;  d = c;  c = t;
             }
         }
+        for (int i = 0; i < 16; i++) {
+            CubeSymCorn[i] = CubeSym[i].getCornPacked();
+            CubeSymEdge[i] = CubeSym[i].getEdgePacked();
+            CubeSymMirror[i] = CubeSym[i].ca[0] >> 3 >= 3;
+        }
         for (int i = 0; i < 16; i++) {
             for (int j = 0; j < 16; j++) {
-                CornMult(CubeSym[i], CubeSym[j], c);
+                long prod = packedCornMult(CubeSymCorn[i], CubeSymCorn[j]);
                 for (int k = 0; k < 16; k++) {
-                    if (CubeSym[k].equalsCorn(c)) {
+                    if (CubeSymCorn[k] == prod) {
                         SymMult[i][j] = k;
                         if (k == 0) {
                             SymInv[i] = j;
@@ -534,11 +731,15 @@ class CubieCube {
                 }
             }
         }
+        long[] moveCorn = new long[18];
+        for (int m = 0; m < 18; m++) {
+            moveCorn[m] = moveCube[m].getCornPacked();
+        }
         for (int j = 0; j < 18; j++) {
             for (int s = 0; s < 16; s++) {
-                CornConjugate(moveCube[j], SymInv[s], c);
+                long conj = packedCornConjugate(moveCorn[j], SymInv[s]);
                 for (int m = 0; m < 18; m++) {
-                    if (c.equalsCorn(moveCube[m])) {
+                    if (conj == moveCorn[m]) {
                         SymMove[s][j] = m;
                         break;
                     }
@@ -580,7 +781,6 @@ class CubieCube {
 
     static void initFlipSym2Raw() {
         CubieCube c = new CubieCube();
-        CubieCube d = new CubieCube();
         int count = 0;
         FlipR2S = new char[2048];
         for (int i = 0; i < 2048; i++) {
@@ -588,9 +788,9 @@ class CubieCube {
                 continue;
             }
             c.setFlip(i);
+            long edge = c.getEdgePacked();
             for (int s = 0; s < 16; s += 2) {
-                EdgeConjugate(c, s, d);
-                int idx = d.getFlip();
+                int idx = packedGetFlip(packedEdgeConjugate(edge, s));
                 if (idx == i) {
                     SymStateFlip[count] |= 1 << (s >> 1);
                 }
@@ -606,7 +806,6 @@ class CubieCube {
 
     static void initTwistSym2Raw() {
         CubieCube c = new CubieCube();
-        CubieCube d = new CubieCube();
         int count = 0;
         TwistR2S = new char[2187];
         for (int i = 0; i < 2187; i++) {
@@ -614,9 +813,9 @@ class CubieCube {
                 continue;
             }
             c.setTwist(i);
+            long corn = c.getCornPacked();
             for (int s = 0; s < 16; s += 2) {
-                CornConjugate(c, s, d);
-                int idx = d.getTwist();
+                int idx = packedGetTwist(packedCornConjugate(corn, s));
                 if (idx == i) {
                     SymStateTwist[count] |= 1 << (s >> 1);
                 }
@@ -19,11 +19,178 @@ public class Main {
     static boolean inverse = false;
     static boolean showLength = false;
     static Search search = new Search();
+    static final int CACHE_SIZE = 256;
+    static final long REPAIR_NODES = 100000;
+    static final int VERIFY_WARMUP = 100000;
+    private static volatile SolutionCache cache;
 
     // ++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++
     public static void main(String[] args) {
+        if (args.length > 0 && args[0].equals("-benchsym")) {
+            benchSelfSymmetry(args.length > 1 ? Integer.parseInt(args[1]) : 100000);
+            return;
+        }
+        if (args.length > 0 && args[0].equals("-solutions")) {
+            // -solutions [count]: alternative solutions of the example cube, shortest first
+            printSolutions(SAMPLE_CUBE, args.length > 1 ? Integer.parseInt(args[1]) : 20);
+            return;
+        }
+        if (args.length > 0 && args[0].equals("-random")) {
+            // -random [count] [seed]: prints a reproducible corpus of random cubes, one facelet string per line
+            int count = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+            long seed = args.length > 2 ? Long.parseLong(args[2]) : 42;
+            for (String cube : Tools.randomCubes(seed, count)) {
+                System.out.println(cube);
+            }
+            return;
+        }
+        if (args.length > 0 && args[0].equals("-ambiguous")) {
+            // -ambiguous [count]: the example cube with count red/orange stickers read the wrong way round
+            solveMisread(SAMPLE_CUBE, args.length > 1 ? Integer.parseInt(args[1]) : 3);
+            return;
+        }
+        if (args.length > 0 && args[0].equals("-stats")) {
+            // -stats [count] [seed]: search counters over a corpus of random cubes, as CSV
+            int count = args.length > 1 ? Integer.parseInt(args[1]) : 100;
+            long seed = args.length > 2 ? Long.parseLong(args[2]) : 42;
+            System.out.print(collectStats(Tools.randomCubes(seed, count)).toCsv("seed" + seed + "x" + count));
+            return;
+        }
+        if (args.length > 0 && args[0].equals("-verify")) {
+            // -verify [count] [threads]: solves a corpus of random cubes, then checks every solution
+            int count = args.length > 1 ? Integer.parseInt(args[1]) : 100;
+            int threads = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+            System.out.println(verifySolutions(Tools.randomCubes(42, count), threads));
+            return;
+        }
         // W, O, B, Y, R, G
-        System.out.println(solveCube("YYYYWYYWWGRGWOGWBWGOORBRYBGBORGYWRGBRBRYRBBOOOOBRGGOWW"));
+        System.out.println(solveCube(SAMPLE_CUBE));
+    }
+
+    static final String SAMPLE_CUBE = "YYYYWYYWWGRGWOGWBWGOORBRYBGBORGYWRGBRBRYRBBOOOOBRGGOWW";
+
+    static void printSolutions(String cube, int count) {
+        Search.init();
+        long t = System.nanoTime();
+        SolutionIterator iter = search.solutions(cube, maxDepth, 0, t + maxTime * 1000000000L);
+        if (iter.getError() != 0) {
+            System.out.println("Error " + -iter.getError());
+            return;
+        }
+        for (int n = 0; n < count && iter.hasNext(); n++) {
+            int[] moves = iter.next();
+            StringBuilder sb = new StringBuilder();
+            for (int m : moves) {
+                sb.append(Util.move2str[m]).append(' ');
+            }
+            System.out.println(sb + "(" + moves.length + "f, " + iter.getProbeCount() + " probes, "
+                + (System.nanoTime() - t) / 1000 + " us)");
+        }
+    }
+
+    static void solveMisread(String cube, int count) {
+        Search.init();
+        AmbiguousCube read = new AmbiguousCube(cube);
+        for (int i = 0; i < 54 && count > 0; i++) {
+            char c = cube.charAt(i);
+            if (i % 9 != 4 && (c == 'R' || c == 'O')) {
+                read.addCandidate(i, c, 0.4);
+                read.addCandidate(i, c == 'R' ? 'O' : 'R', 0.6);
+                count--;
+            }
+        }
+        long t = System.nanoTime();
+        String facelets = read.mostLikely(100000);
+        t = System.nanoTime() - t;
+        System.out.println("Most likely legal state " + facelets + (cube.equals(facelets) ? " (the real one)" : "")
+            + " found in " + t / 1000 + " us");
+        if (facelets != null) {
+            System.out.println(search.solution(facelets, maxDepth, 100, 0, 0));
+        }
+    }
+
+    // Solves the cubes with the settings of solveCube(), on a Search of its own so the GUI search is not counted.
+    static SearchStats collectStats(String[] cubes) {
+        Search.init();
+        Search s = new Search();
+        s.setStatsEnabled(true);
+        for (String cube : cubes) {
+            s.solution(cube, maxDepth, Long.MAX_VALUE, 0, 0);
+        }
+        return s.getStats();
+    }
+
+    // Solves the cubes with the settings of solveCube() first, so the verification is timed on its own.
+    static SolutionVerifier.Report verifySolutions(String[] cubes, int threads) {
+        Search.init();
+        Search s = new Search();
+        int[][] solutions = new int[cubes.length][];
+        int[] moves = new int[31];
+        for (int i = 0; i < cubes.length; i++) {
+            int length = s.solution(cubes[i], maxDepth, Long.MAX_VALUE, 0, moves);
+            solutions[i] = length < 0 ? null : java.util.Arrays.copyOf(moves, length);
+        }
+        // untimed, so verifyAll() is not timed while the JIT still compiles the checks
+        for (int i = 0; i < VERIFY_WARMUP && cubes.length > 0; i++) {
+            SolutionVerifier.verify(cubes[i % cubes.length], solutions[i % cubes.length]);
+        }
+        return SolutionVerifier.verifyAll(cubes, solutions, threads);
+    }
+
+    // Times the symmetry detection done for every solve, with and without the coordinate prefilter.
+    // A few symmetric cubes are mixed in so matches are exercised as well.
+    static void benchSelfSymmetry(int count) {
+        Search.init();
+        int[] states = new int[Tools.STATE_SIZE * count];
+        Tools.randomStates(new java.util.Random(42), states, 0, count);
+        CubieCube[] cubes = new CubieCube[count];
+        CubieCube superflip = new CubieCube(0, 0, 0, 2047);
+        for (int i = 0; i < count; i++) {
+            cubes[i] = i % 100 == 0 ? new CubieCube(superflip) : Tools.toCubieCube(states, i * Tools.STATE_SIZE);
+        }
+        for (int round = 0; round < 3; round++) {
+            long t = System.nanoTime();
+            for (int i = 0; i < count; i++) {
+                cubes[i].selfSymmetryFull();
+            }
+            long full = System.nanoTime() - t;
+            t = System.nanoTime();
+            for (int i = 0; i < count; i++) {
+                cubes[i].selfSymmetry();
+            }
+            long fast = System.nanoTime() - t;
+            System.out.println("selfSymmetry: full " + full / count + " ns, prefiltered " + fast / count + " ns per cube");
+        }
+        int symmetric = 0;
+        for (int i = 0; i < count; i++) {
+            long sym = cubes[i].selfSymmetry();
+            if (sym != cubes[i].selfSymmetryFull()) {
+                System.out.println("Mismatch for cube " + i);
+                return;
+            }
+            if (sym != 1) {
+                symmetric++;
+            }
+        }
+        System.out.println("Results identical for " + count + " cubes, " + symmetric + " with extra symmetry");
+    }
+
+    /**
+     * The cache used by solveCube(), created on first use. That waits for the tables solution() needs (see
+     * Search.initSearchable()), without holding a lock.
+     */
+    public static SolutionCache getSolutionCache() {
+        SolutionCache c = cache;
+        if (c == null) {
+            Search.initSearchable();
+            synchronized (Main.class) {
+                if (cache == null) {
+                    cache = new SolutionCache(CACHE_SIZE);
+                }
+                c = cache;
+            }
+        }
+        return c;
     }
 
     // +++++++++++++++++++++++++++++++ Generate cube from GUI-Input and solve it ++++++++++++++++++++++++++++++++++++++++
@@ -51,41 +218,89 @@ public class Main {
         mask |= inverse ? Search.INVERSE_SOLUTION : 0;
         mask |= showLength ? Search.APPEND_LENGTH : 0;
         long t = System.nanoTime();
-        String result = search.solution(cubeString, maxDepth, 100, 0, mask);
-        // ++++++++++++++++++++++++ Call Search.solution method from package org.kociemba.twophase ++++++++++++++++++++++++
-        while (result.startsWith("Error 8") && ((System.nanoTime() - t) < maxTime * 1.0e9)) {
-            result = search.next(100, 0, mask);
+        SolutionCache solutionCache = getSolutionCache();
+        String result = solutionCache.get(search, cubeString, maxDepth, mask);
+        if (result == null) {
+            // ++++++++++++++++++++++++ Call Search.solution method from package org.kociemba.twophase ++++++++++++++++++++++++
+            result = search.solution(cubeString, maxDepth, Long.MAX_VALUE, 0, mask, t + maxTime * 1000000000L, null);
+            if (!result.startsWith("Error")) {
+                solutionCache.put(search);
+            }
         }
         t = System.nanoTime() - t;
 
-        // +++++++++++++++++++ Replace the error messages with more meaningful ones in your language ++++++++++++++++++++++
         if (result.contains("Error")) {
-            switch (result.charAt(result.length() - 1)) {
-                case '1':
-                    result += " : There are not exactly nine facelets of each color!";
-                    break;
-                case '2':
-                    result = " : Not all 12 edges exist exactly once!";
-                    break;
-                case '3':
-                    result = " : Flip error: One edge has to be flipped!";
-                    break;
-                case '4':
-                    result = " : Not all 8 corners exist exactly once!";
-                    break;
-                case '5':
-                    result = " : Twist error: One corner has to be twisted!";
-                    break;
-                case '6':
-                    result = " : Parity error: Two corners or two edges have to be exchanged!";
-                    break;
-                case '7':
-                    result = " : No solution exists for the given maximum move number!";
-                    break;
-                case '8':
-                    result = " : Timeout, no solution found within given maximum time!";
-                    break;
-            }
+            result = errorMessage(-Integer.parseInt(result.substring("Error ".length())));
+        }
+        return result;
+    }
+
+    /**
+     * Same as solveCube(String) without rendering the solution. The flags of the GUI only affect the rendering and
+     * are ignored.
+     *
+     * @param moves
+     *      receives the solution, see Search.solution(String, int, long, long, int[]) for the encoding.
+     * @return the number of moves, or -n for "Error n" (see errorMessage())
+     */
+    public static int solveCube(String cube, int[] moves) {
+        return solveCube(cube, moves, null);
+    }
+
+    /**
+     * Same as solveCube(String, int[]), token stops the search from another thread with "Error 10".
+     */
+    public static int solveCube(String cube, int[] moves, CancelToken token) {
+        long t = System.nanoTime();
+        SolutionCache solutionCache = getSolutionCache();
+        int length = solutionCache.get(search, cube, maxDepth, moves);
+        if (length >= 0) {
+            return length;
+        }
+        length = search.solution(cube, maxDepth, Long.MAX_VALUE, 0, moves, t + maxTime * 1000000000L, token);
+        if (length >= 0) {
+            solutionCache.put(search);
+        }
+        return length;
+    }
+
+    /**
+     * Fixes a single misread facelet: if cube is not solvable and exactly one facelet change makes it solvable, the
+     * changed facelet string is returned, otherwise null. Several single changes leave the choice to the user, see
+     * CubeRepair.suggest().
+     */
+    public static String repairCube(String cube) {
+        java.util.List<String> repairs = CubeRepair.suggest(cube, 1, 2, REPAIR_NODES);
+        if (repairs.size() != 1 || repairs.get(0).equals(cube)) {
+            return null;
+        }
+        return repairs.get(0);
+    }
+
+    // +++++++++++++++++++ Replace the error messages with more meaningful ones in your language ++++++++++++++++++++++
+    public static String errorMessage(int error) {
+        String result = "Error " + -error;
+        switch (-error) {
+            case 1:
+                return result + " : There are not exactly nine facelets of each color!";
+            case 2:
+                return result + " : Not all 12 edges exist exactly once!";
+            case 3:
+                return result + " : Flip error: One edge has to be flipped!";
+            case 4:
+                return result + " : Not all 8 corners exist exactly once!";
+            case 5:
+                return result + " : Twist error: One corner has to be twisted!";
+            case 6:
+                return result + " : Parity error: Two corners or two edges have to be exchanged!";
+            case 7:
+                return result + " : No solution exists for the given maximum move number!";
+            case 8:
+                return result + " : Probe limit exceeded, no solution found within the given number of probes!";
+            case 9:
+                return result + " : Timeout, no solution found within given maximum time!";
+            case 10:
+                return result + " : Search cancelled before a solution was found!";
         }
         return result;
     }
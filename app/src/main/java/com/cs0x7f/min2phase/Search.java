@@ -45,7 +45,32 @@ public class Search {
 
     static final int PRE_IDX_MAX = TRY_PRE_MOVE ? 9 : 1;
 
-    static boolean inited = false;
+    // number of phase1, phase1opt and phase2 nodes between two looks at the deadline and the cancel token
+    static final int STOP_CHECK_INTERVAL = 256;
+
+    /**
+     * Stages of the table initialization, see getInitStage(). Without pregenerated tables (see Tables) the phase 2
+     * and the small phase 1 tables are built first, INIT_SEARCHABLE, solution() then works with weaker phase 1
+     * pruning until TwistFlipPrun is done, INIT_COMPLETE. With EXTRA_PRUN_LEVEL > 0 both stages are reached at once.
+     */
+    public static final int INIT_NONE = 0;
+    public static final int INIT_SEARCHABLE = 1;
+    public static final int INIT_COMPLETE = 2;
+
+    /**
+     * Called by initAsync() on every stage reached, on the thread that reached it.
+     */
+    public interface InitListener {
+        void onInitStage(int stage);
+    }
+
+    static volatile int initStage = INIT_NONE;
+    private static java.util.concurrent.FutureTask<Void> initTask;
+    private static Throwable initFailure;
+    private static final java.util.List<InitListener> initListeners = new java.util.ArrayList<InitListener>();
+
+    // whether the nodes use TwistFlipPrun, see updatePruning()
+    private boolean useTwistFlipPrun = false;
 
     private int[] move = new int[31];
 
@@ -59,6 +84,8 @@ public class Search {
     private CoordCube[][] node0 = new CoordCube[6][PRE_IDX_MAX];
 
     private byte[] f = new byte[54];
+    private byte[] faceletChars = new byte[54];
+    private byte[] colorOf = new byte[256];
 
     private long selfSym;
     private int preIdxMax;
@@ -69,15 +96,45 @@ public class Search {
     private int depth1;
     private int maxDep2;
     private int sol;
-    private String solution;
+    // the last solution found, in the order the moves have to be applied. Rendered to a String only on demand.
+    private boolean found;
+    private int[] solutionMoves = new int[31];
+    private int solutionLength;
+    private int solutionDepth1;
+    private int solutionUrfIdx;
     private long probe;
     private long probeMax;
     private long probeMin;
     private int verbose;
-    private CubieCube cc = new CubieCube();
+    CubieCube cc = new CubieCube();
+    // the cube the current search solves, cc is overwritten by every verify(), e.g. a cache lookup in between
+    final CubieCube searchCube = new CubieCube();
 
     private boolean isRec = false;
 
+    // Set while a SolutionIterator drives the search. With enumLength >= 0 the search is not narrowed: every phase 2
+    // tail of every probe is tried, the solutions of exactly enumLength moves are collected in enumFound and the
+    // search stops after the phase 1 node they came from. enumPath keeps the moves of that node for the next call.
+    private int enumLength = -1;
+    private java.util.List<int[]> enumFound;
+    private int enumCount;
+    private int[] enumPath = new int[31];
+    private int[] enumMoves = new int[32];
+
+    // Deadline (System.nanoTime(), 0 for none) and token of the running call. They are only looked at when
+    // stopCountdown runs out. After a stop stopError is -9 / -10 and stopCountdown stays negative, so all nodes on the
+    // stack return at once.
+    private long deadline;
+    private CancelToken token;
+    private int stopCountdown;
+    private int stopError;
+    // maxl of the phase 1 node a stop left unsearched, -1 if the search stopped at a probe. A resumed search follows
+    // move[] down to that node and searches it again from scratch, the moves below it are stale.
+    private int recMaxl = -1;
+
+    // counters, null while disabled. Every node or move counted costs one check of the field then.
+    private SearchStats stats;
+
     /**
      *     Verbose_Mask determines if a " . " separates the phase1 and phase2 parts of the solver string like in F' R B R L2 F .
      *     U2 U D for example.<br>
@@ -175,19 +232,88 @@ public class Search {
      *      Error 8: Probe limit exceeded, no solution within given probMax
      */
     public synchronized String solution(String facelets, int maxDepth, long probeMax, long probeMin, int verbose) {
+        return solution(facelets, maxDepth, probeMax, probeMin, verbose, 0, null);
+    }
+
+    /**
+     * Same as solution(String, int, long, long, int), stopped at a deadline or by a token. If a solution has been
+     * found when the search stops, it is returned like for the probe limit.
+     *
+     * @param deadline
+     *      System.nanoTime() after which the search stops, 0 for none. The clock is read every STOP_CHECK_INTERVAL
+     *      search nodes, i.e. a few microseconds apart.
+     * @param token
+     *      stops the search when cancelled from another thread, or null.
+     * @return The solution string or an error code as solution(String, int, long, long, int), and<br>
+     *      Error 9: Deadline exceeded, no solution found before the deadline<br>
+     *      Error 10: Cancelled, no solution found before the token was cancelled
+     */
+    public synchronized String solution(String facelets, int maxDepth, long probeMax, long probeMin, int verbose,
+                                        long deadline, CancelToken token) {
+        int check = verify(facelets);
+        if (check != 0) {
+            return "Error " + Math.abs(check);
+        }
+        return toResult(solve(maxDepth, probeMax, probeMin, verbose, deadline, token));
+    }
+
+    /**
+     * Same as solution(String, ...) without rendering the solution: the moves are written to moves, in the order they
+     * have to be applied. A move is face * 3 + power, the faces in the order U R F D L B and the powers
+     * clockwise, half turn, counter-clockwise.
+     *
+     * @param moves
+     *      receives the solution, at least maxDepth + 1 long.
+     * @return the number of moves or -n for "Error n"
+     */
+    public synchronized int solution(String facelets, int maxDepth, long probeMax, long probeMin, int[] moves) {
+        return solution(facelets, maxDepth, probeMax, probeMin, moves, 0, null);
+    }
+
+    /**
+     * Same as solution(String, int, long, long, int[]) with a deadline and a token, see
+     * solution(String, int, long, long, int, long, CancelToken).
+     */
+    public synchronized int solution(String facelets, int maxDepth, long probeMax, long probeMin, int[] moves,
+                                     long deadline, CancelToken token) {
+        int check = verify(facelets);
+        if (check != 0) {
+            return check;
+        }
+        int ret = solve(maxDepth, probeMax, probeMin, 0, deadline, token);
+        return ret < 0 ? ret : getSolution(moves);
+    }
+
+    /**
+     * Same as solution(String, ...), with the facelets given as ASCII characters, e.g. read from a serial port.
+     */
+    public synchronized String solution(byte[] facelets, int maxDepth, long probeMax, long probeMin, int verbose) {
         int check = verify(facelets);
         if (check != 0) {
             return "Error " + Math.abs(check);
         }
+        return toResult(solve(maxDepth, probeMax, probeMin, verbose, 0, null));
+    }
+
+    private String toResult(int ret) {
+        return ret < 0 ? "Error " + -ret : solutionToString();
+    }
+
+    private int solve(int maxDepth, long probeMax, long probeMin, int verbose, long deadline, CancelToken token) {
         this.sol = maxDepth + 1;
         this.probe = 0;
         this.probeMax = probeMax;
         this.probeMin = Math.min(probeMin, probeMax);
         this.verbose = verbose;
-        this.solution = null;
+        this.found = false;
         this.isRec = false;
+        this.recMaxl = -1;
+        setLimits(deadline, token);
+        if (stats != null) {
+            stats.solves++;
+        }
 
-        init();
+        initSearchable();
 
         initSearch();
 
@@ -195,6 +321,8 @@ public class Search {
     }
 
     private void initSearch() {
+        searchCube.copy(cc);
+        updatePruning();
         conjMask = (TRY_INVERSE ? 0 : 0x38) | (TRY_THREE_AXES ? 0 : 0x36);
         CubieCube pc = new CubieCube();
         selfSym = cc.selfSymmetry();
@@ -230,17 +358,187 @@ public class Search {
     }
 
     public synchronized String next(long probeMax, long probeMin, int verbose) {
+        return next(probeMax, probeMin, verbose, 0, null);
+    }
+
+    /**
+     * Same as next(long, long, int) with a deadline and a token, see
+     * solution(String, int, long, long, int, long, CancelToken). A search stopped by them can be continued by next(),
+     * which searches the phase 1 node or phase 2 probe it stopped in again. Slices far below a millisecond may not
+     * get past such a node.
+     */
+    public synchronized String next(long probeMax, long probeMin, int verbose, long deadline, CancelToken token) {
+        return toResult(resume(probeMax, probeMin, verbose, deadline, token));
+    }
+
+    /**
+     * Same as next(long, long, int) for solution(String, int, long, long, int[]), without rendering the solution.
+     * @return the number of moves written to moves or -n for "Error n"
+     */
+    public synchronized int next(long probeMax, long probeMin, int[] moves) {
+        return next(probeMax, probeMin, moves, 0, null);
+    }
+
+    public synchronized int next(long probeMax, long probeMin, int[] moves, long deadline, CancelToken token) {
+        int ret = resume(probeMax, probeMin, verbose & OPTIMAL_SOLUTION, deadline, token);
+        return ret < 0 ? ret : getSolution(moves);
+    }
+
+    private int resume(long probeMax, long probeMin, int verbose, long deadline, CancelToken token) {
         this.probe = 0;
         this.probeMax = probeMax;
         this.probeMin = Math.min(probeMin, probeMax);
-        this.solution = null;
+        this.found = false;
         this.isRec = (this.verbose & OPTIMAL_SOLUTION) == (verbose & OPTIMAL_SOLUTION);
         this.verbose = verbose;
+        if (!isRec) {
+            recMaxl = -1;
+        }
+        setLimits(deadline, token);
+        if (stats != null) {
+            stats.solves++;
+        }
         return (verbose & OPTIMAL_SOLUTION) == 0 ? search() : searchopt();
     }
 
+    /**
+     * Lazily enumerates distinct solutions as arrays of move indices, see SolutionIterator.
+     * The first solution is the best one the normal search finds within probeMin probes, the following ones have the
+     * same or a greater length, up to maxDepth. This Search must not be used for anything else during the iteration.
+     *
+     * @param deadline
+     *      System.nanoTime() after which the iteration ends, 0 for none.
+     * @return the iterator, SolutionIterator.getError() tells whether the facelets are valid.
+     */
+    public synchronized SolutionIterator solutions(String facelets, int maxDepth, long probeMin, long deadline) {
+        SolutionIterator iter = new SolutionIterator(this, maxDepth, probeMin, deadline);
+        int check = verify(facelets);
+        if (check != 0) {
+            iter.setError(check);
+            return iter;
+        }
+        initSearchable();
+        initSearch();
+        return iter;
+    }
+
+    /**
+     * Normal search for iter, without probe limit.
+     * @return the length of the solution copied to moves, -1 if there is none or iter stopped
+     */
+    synchronized int firstSolution(SolutionIterator iter, int maxDepth, long probeMin, int[] moves) {
+        this.sol = maxDepth + 1;
+        this.probe = 0;
+        this.probeMax = Long.MAX_VALUE;
+        this.probeMin = probeMin;
+        this.verbose = 0;
+        this.found = false;
+        this.isRec = false;
+        this.recMaxl = -1;
+        setLimits(iter.deadline, iter.token);
+        search();
+        return getSolution(moves);
+    }
+
+    /**
+     * Continues the exhaustive search of iter for solutions of exactly length moves.
+     * @param resume
+     *      false to start over, true to continue after the phase 1 node of the last call.
+     * @return the number of solutions added to found, 0 if there are no more or iter stopped.
+     */
+    synchronized int enumerate(SolutionIterator iter, int length, boolean resume, java.util.List<int[]> found) {
+        // a pre-move may merge with the last move, so phase 1 goes one move further than the solutions
+        this.sol = length + 2;
+        this.isRec = resume;
+        this.recMaxl = -1;
+        setLimits(iter.deadline, iter.token);
+        enumLength = length;
+        enumFound = found;
+        enumCount = 0;
+        if (resume) {
+            // the phase 2 tails of the last call wrote behind the path, the path itself is restored to be safe
+            System.arraycopy(enumPath, 0, move, 0, enumPath.length);
+        }
+        try {
+            search();
+            if (enumCount > 0) {
+                System.arraycopy(move, 0, enumPath, 0, enumPath.length);
+            }
+            return enumCount;
+        } finally {
+            enumLength = -1;
+            enumFound = null;
+            enumCount = 0;
+        }
+    }
+
+    private void setLimits(long deadline, CancelToken token) {
+        this.deadline = deadline;
+        this.token = token;
+        stopError = 0;
+        stopCountdown = 0; // a token cancelled beforehand stops at the first node
+    }
+
+    /**
+     * Called when stopCountdown runs out.
+     * @return true if the search has to stop, stopError tells why.
+     */
+    private boolean checkStop() {
+        if (stopError != 0) {
+            return true;
+        }
+        if (token != null && token.isCancelled()) {
+            stopError = -10;
+        } else if (deadline != 0 && System.nanoTime() - deadline > 0) {
+            stopError = -9;
+        } else {
+            stopCountdown = STOP_CHECK_INTERVAL;
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * This method returns -9 if the last call stopped at its deadline, -10 if its token was cancelled, 0 otherwise.
+     * A solution found before the stop is still returned by that call.
+     */
+    public int stopReason() {
+        return stopError;
+    }
+
+    /**
+     * Switches the counters of SearchStats on or off. Switching on starts from zero, switching off drops them.
+     */
+    public synchronized void setStatsEnabled(boolean enabled) {
+        stats = enabled ? new SearchStats() : null;
+    }
+
+    /**
+     * This method returns a copy of the counters collected since setStatsEnabled(true) or resetStats(), null if they
+     * are disabled
+     */
+    public synchronized SearchStats getStats() {
+        return stats == null ? null : stats.copy();
+    }
+
+    public synchronized void resetStats() {
+        if (stats != null) {
+            stats = new SearchStats();
+        }
+    }
+
+    /**
+     * This method returns whether solution() can run without building tables, see getInitStage()
+     */
     public static boolean isInited() {
-        return inited;
+        return initStage >= INIT_SEARCHABLE;
+    }
+
+    /**
+     * This method returns INIT_NONE, INIT_SEARCHABLE or INIT_COMPLETE
+     */
+    public static int getInitStage() {
+        return initStage;
     }
 
     public long numberOfProbes() {
@@ -251,45 +549,177 @@ public class Search {
         return sol;
     }
 
-    public synchronized static void init() {
-        if (inited) {
-            return;
+    /**
+     * Builds all tables on the calling thread, or waits for initAsync() to finish them.
+     */
+    public static void init() {
+        // FutureTask.run() does nothing if the task already runs or ran on another thread
+        initTask().run();
+        awaitInitStage(INIT_COMPLETE);
+    }
+
+    /**
+     * Builds the tables on a background thread. The listener, if not null, is called with every stage reached,
+     * starting with the current one if it is not INIT_NONE. It is called with a lock held and should return quickly.
+     * @return a future that is done once all tables are built.
+     */
+    public static java.util.concurrent.Future<Void> initAsync(InitListener listener) {
+        java.util.concurrent.FutureTask<Void> task;
+        boolean start;
+        synchronized (Search.class) {
+            start = initTask == null;
+            task = initTask();
+            if (listener != null) {
+                if (initStage != INIT_NONE) {
+                    listener.onInitStage(initStage);
+                }
+                if (initStage != INIT_COMPLETE) {
+                    initListeners.add(listener);
+                }
+            }
+        }
+        if (start) {
+            Thread thread = new Thread(task, "min2phase init");
+            thread.setDaemon(true);
+            thread.start();
+        }
+        return task;
+    }
+
+    // what solution() needs: the tables of INIT_SEARCHABLE, the rest is built in the background if nobody did yet
+    static void initSearchable() {
+        if (initStage < INIT_SEARCHABLE) {
+            initAsync(null);
+            awaitInitStage(INIT_SEARCHABLE);
         }
+    }
+
+    private static synchronized java.util.concurrent.FutureTask<Void> initTask() {
+        if (initTask == null) {
+            initTask = new java.util.concurrent.FutureTask<Void>(new java.util.concurrent.Callable<Void>() {
+                @Override
+                public Void call() {
+                    try {
+                        buildTables();
+                    } catch (RuntimeException e) {
+                        initFailed(e);
+                        throw e;
+                    } catch (Error e) {
+                        initFailed(e);
+                        throw e;
+                    }
+                    return null;
+                }
+            });
+        }
+        return initTask;
+    }
+
+    private static void buildTables() {
         CubieCube.initMove();
         CubieCube.initSym();
 
         if (EXTRA_PRUN_LEVEL > 0) {
             CoordCubeHuge.init();
-        } else {
-            CoordCube.init();
+        } else if (!Tables.load()) {
+            // no pregenerated tables on the classpath, see Tables
+            CoordCube.initSearchable();
+            setInitStage(INIT_SEARCHABLE);
+            if (USE_TWIST_FLIP_PRUN) {
+                CoordCube.initTwistFlipPrun();
+            }
         }
+        setInitStage(INIT_COMPLETE);
+    }
 
-        inited = true;
+    private static synchronized void setInitStage(int stage) {
+        initStage = stage;
+        Search.class.notifyAll();
+        for (InitListener listener : initListeners) {
+            listener.onInitStage(stage);
+        }
+        if (stage == INIT_COMPLETE) {
+            initListeners.clear();
+        }
+    }
+
+    private static synchronized void initFailed(Throwable cause) {
+        initFailure = cause;
+        Search.class.notifyAll();
+    }
+
+    private static synchronized void awaitInitStage(int stage) {
+        boolean interrupted = false;
+        while (initStage < stage) {
+            if (initFailure != null) {
+                throw new IllegalStateException("Table initialization failed", initFailure);
+            }
+            try {
+                Search.class.wait();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // TwistFlipPrun may be built by another thread, a search picks it up when it starts
+    private void updatePruning() {
+        boolean use = initStage == INIT_COMPLETE;
+        if (use == useTwistFlipPrun) {
+            return;
+        }
+        useTwistFlipPrun = use;
+        for (int i = 0; i < 21; i++) {
+            nodeUD[i].useTwistFlipPrun = use;
+            nodeRL[i].useTwistFlipPrun = use;
+            nodeFB[i].useTwistFlipPrun = use;
+        }
+        for (int i = 0; i < 6; i++) {
+            for (int j = 0; j < PRE_IDX_MAX; j++) {
+                node0[i][j].useTwistFlipPrun = use;
+            }
+        }
     }
 
     int verify(String facelets) {
-        int count = 0x000000;
-        try {
-            String center = new String(
-                new char[] {
-                    facelets.charAt(Util.U5),
-                    facelets.charAt(Util.R5),
-                    facelets.charAt(Util.F5),
-                    facelets.charAt(Util.D5),
-                    facelets.charAt(Util.L5),
-                    facelets.charAt(Util.B5)
-                }
-            );
-            for (int i = 0; i < 54; i++) {
-                f[i] = (byte) center.indexOf(facelets.charAt(i));
-                if (f[i] == -1) {
-                    return -1;
-                }
-                count += 1 << (f[i] << 2);
+        if (facelets == null || facelets.length() < 54) {
+            return -1;
+        }
+        for (int i = 0; i < 54; i++) {
+            char c = facelets.charAt(i);
+            if (c > 0xff) {
+                return -1;
             }
-        } catch (Exception e) {
+            faceletChars[i] = (byte) c;
+        }
+        return verify(faceletChars);
+    }
+
+    /**
+     * The colors are named by the characters of the 6 centers, the counts of all colors are checked in the same pass
+     * that maps the characters to colors.
+     */
+    int verify(byte[] facelets) {
+        if (facelets == null || facelets.length < 54) {
             return -1;
         }
+        java.util.Arrays.fill(colorOf, (byte) -1);
+        for (int i = 5; i >= 0; i--) {
+            // first center wins for duplicated center colors, the count check rejects those anyway
+            colorOf[facelets[Util.centerFacelet[i]] & 0xff] = (byte) i;
+        }
+        int count = 0x000000;
+        for (int i = 0; i < 54; i++) {
+            byte col = colorOf[facelets[i] & 0xff];
+            if (col == -1) {
+                return -1;
+            }
+            f[i] = col;
+            count += 1 << (col << 2);
+        }
         if (count != 0x999999) {
             return -1;
         }
@@ -297,7 +727,10 @@ public class Search {
         return cc.verify();
     }
 
-    private String search() {
+    /**
+     * @return the length of the solution found or -7 / -8 / -9 / -10 as for "Error 7" ... "Error 10"
+     */
+    private int search() {
         for (length1 = isRec ? length1 : 0; length1 < sol; length1++) {
             maxDep2 = Math.min(MAX_DEPTH2, sol - length1);
             for (urfIdx = isRec ? urfIdx : 0; urfIdx < 6; urfIdx++) {
@@ -309,38 +742,63 @@ public class Search {
                         continue;
                     }
                     node0[urfIdx][preIdx].calcPruning(true);
+                    if (stats != null) {
+                        stats.phase1Evals++;
+                    }
                     int ssym = (int) (0xffff & selfSym);
                     if (preIdx != 0) {
                         ssym &= CubieCube.moveCubeSym[CubieCube.preMove[preIdx]];
                     }
                     depth1 = length1 - (preIdx == 0 ? 0 : 1);
+                    if (enumLength >= 0 && depth1 > enumLength) {
+                        continue;
+                    }
+                    if (stats != null && node0[urfIdx][preIdx].prun <= depth1) {
+                        stats.branchTries[urfIdx * PRE_IDX_MAX + preIdx]++;
+                    }
                     if (node0[urfIdx][preIdx].prun <= depth1
                             && phase1(node0[urfIdx][preIdx], ssym, depth1, -1) == 0) {
-                        return solution == null ? "Error 8" : solution;
+                        return found ? solutionLength : stopError != 0 ? stopError : -8;
                     }
                 }
             }
         }
-        return solution == null ? "Error 7" : solution;
+        return found ? solutionLength : -7;
     }
 
     /**
      * @return
-     *      0: Found or Probe limit exceeded
+     *      0: Found, Probe limit exceeded or stopped
      *      1: Try Next Power
      *      2: Try Next Axis
      */
     private int phase1(CoordCube node, long ssym, int maxl, int lm) {
+        if (isRec && maxl == recMaxl) {
+            isRec = false;
+            recMaxl = -1;
+        }
+        if (!isRec && --stopCountdown < 0 && checkStop()) {
+            recMaxl = maxl;
+            return 0;
+        }
+        if (stats != null) {
+            stats.phase1Nodes[depth1 - maxl]++;
+        }
         if (node.prun == 0 && maxl < 5) {
             if (maxl == 0) {
+                if (isRec && enumLength >= 0) {
+                    // enumerated before the last stop
+                    isRec = false;
+                    return 1;
+                }
                 int ret = initPhase2();
                 if (ret == 0 || preIdx == 0) {
-                    return ret;
+                    return enumCount > 0 ? 0 : ret;
                 }
                 preIdx++;
                 ret = Math.min(initPhase2(), ret);
                 preIdx--;
-                return ret;
+                return enumCount > 0 ? 0 : ret;
             } else {
                 return 1;
             }
@@ -368,6 +826,9 @@ public class Search {
                 }
 
                 int prun = nodeUD[maxl].doMovePrun(node, m, true);
+                if (stats != null) {
+                    stats.countPhase1Move(prun, maxl);
+                }
                 if (prun > maxl) {
                     break;
                 } else if (prun == maxl) {
@@ -386,11 +847,14 @@ public class Search {
         return 1;
     }
 
-    private String searchopt() {
+    private int searchopt() {
         int maxprun1 = 0;
         int maxprun2 = 0;
         for (int i = 0; i < 6; i++) {
             node0[i][0].calcPruning(false);
+            if (stats != null) {
+                stats.phase1Evals++;
+            }
             if (i < 3) {
                 maxprun1 = Math.max(maxprun1, node0[i][0].prun);
             } else {
@@ -404,21 +868,35 @@ public class Search {
             CoordCube rl = node0[1 + urfIdx][0];
             CoordCube fb = node0[2 + urfIdx][0];
 
+            if (stats != null && ud.prun <= length1 && rl.prun <= length1 && fb.prun <= length1) {
+                stats.branchTries[urfIdx * PRE_IDX_MAX]++;
+            }
             if (ud.prun <= length1 && rl.prun <= length1 && fb.prun <= length1
                     && phase1opt(ud, rl, fb, selfSym, length1, -1) == 0) {
-                return solution == null ? "Error 8" : solution;
+                return found ? solutionLength : stopError != 0 ? stopError : -8;
             }
         }
-        return solution == null ? "Error 7" : solution;
+        return found ? solutionLength : -7;
     }
 
     /**
      * @return
-     *      0: Found or Probe limit exceeded
+     *      0: Found, Probe limit exceeded or stopped
      *      1: Try Next Power
      *      2: Try Next Axis
      */
     private int phase1opt(CoordCube ud, CoordCube rl, CoordCube fb, long ssym, int maxl, int lm) {
+        if (isRec && maxl == recMaxl) {
+            isRec = false;
+            recMaxl = -1;
+        }
+        if (!isRec && --stopCountdown < 0 && checkStop()) {
+            recMaxl = maxl;
+            return 0;
+        }
+        if (stats != null) {
+            stats.phase1Nodes[length1 - maxl]++;
+        }
         if (ud.prun == 0 && rl.prun == 0 && fb.prun == 0 && maxl < 5) {
             maxDep2 = maxl + 1;
             depth1 = length1 - maxl;
@@ -447,6 +925,9 @@ public class Search {
 
                 // UD Axis
                 int prun_ud = nodeUD[maxl].doMovePrun(ud, m, false);
+                if (stats != null) {
+                    stats.countPhase1Move(prun_ud, maxl);
+                }
                 if (prun_ud > maxl) {
                     break;
                 } else if (prun_ud == maxl) {
@@ -457,6 +938,9 @@ public class Search {
                 m = CubieCube.urfMove[2][m];
 
                 int prun_rl = nodeRL[maxl].doMovePrun(rl, m, false);
+                if (stats != null) {
+                    stats.countPhase1Move(prun_rl, maxl);
+                }
                 if (prun_rl > maxl) {
                     break;
                 } else if (prun_rl == maxl) {
@@ -470,6 +954,9 @@ public class Search {
                 if (prun_ud == prun_rl && prun_rl == prun_fb && prun_fb != 0) {
                     prun_fb++;
                 }
+                if (stats != null) {
+                    stats.countPhase1Move(prun_fb, maxl);
+                }
 
                 if (prun_fb > maxl) {
                     break;
@@ -493,16 +980,35 @@ public class Search {
 
     /**
      * @return
-     *      0: Found or Probe limit exceeded
+     *      0: Found, Probe limit exceeded or stopped
      *      1: Try Next Power
      *      2: Try Next Axis
      */
     private int initPhase2() {
+        if (stats == null) {
+            return doInitPhase2();
+        }
+        long t = System.nanoTime();
+        int ret = doInitPhase2();
+        stats.initPhase2Nanos += System.nanoTime() - t;
+        return ret;
+    }
+
+    private int doInitPhase2() {
         isRec = false;
-        if (probe >= (solution == null ? probeMax : probeMin)) {
+        if (stopError != 0 || enumLength < 0 && probe >= (found ? probeMin : probeMax)) {
             return 0;
         }
+        if (enumLength >= 0) {
+            // the longest tail, without pre-move or with one that merges with the last move
+            maxDep2 = Math.min(MAX_DEPTH2, enumLength - depth1 + 1);
+        }
         ++probe;
+        if (stats != null) {
+            stats.probes++;
+            stats.branchProbes[urfIdx * PRE_IDX_MAX + preIdx]++;
+            stats.probeLookups[0]++;
+        }
         int cidx = corn0[urfIdx][preIdx] >> 4;
         int csym = corn0[urfIdx][preIdx] & 0xf;
         int mid = node0[urfIdx][preIdx].slice;
@@ -518,6 +1024,9 @@ public class Search {
         mid >>= 9;
         int prun = CoordCube.getPruning(CoordCube.MCPermPrun, cidx * 24 + CoordCube.MPermConj[mid][csym]);
         if (prun >= maxDep2) {
+            if (stats != null) {
+                stats.probesPruned++;
+            }
             return prun > maxDep2 ? 2 : 1;
         }
 
@@ -542,8 +1051,15 @@ public class Search {
                                     edge * 24 + CoordCube.MPermConj[mid][esym]),
                             CoordCube.getPruning(CoordCube.EPermCCombPrun,
                                     edge * 70 + CoordCube.CCombConj[CubieCube.Perm2Comb[cidx]][CubieCube.SymMultInv[esym][csym]])));
+        if (stats != null) {
+            stats.probeLookups[1]++;
+            stats.probeLookups[2]++;
+        }
 
         if (prun >= maxDep2) {
+            if (stats != null) {
+                stats.probesPruned++;
+            }
             return prun > maxDep2 ? 2 : 1;
         }
 
@@ -557,12 +1073,30 @@ public class Search {
             }
         }
 
+        if (enumLength >= 0) {
+            int minDepth2 = Math.max(prun, enumLength - depth1 - (preIdx == 0 ? 0 : 1));
+            for (int depth2 = maxDep2 - 1; depth2 >= minDepth2 && stopError == 0; depth2--) {
+                if (stats != null) {
+                    stats.phase2Entries++;
+                }
+                phase2All(edge, esym, cidx, csym, mid, depth2, depth1, lm);
+            }
+            return stopError != 0 ? 0 : 1;
+        }
+
         int depth2;
         for (depth2 = maxDep2 - 1; depth2 >= prun; depth2--) {
             int ret = phase2(edge, esym, cidx, csym, mid, depth2, depth1, lm);
+            if (stats != null) {
+                stats.phase2Entries++;
+            }
             if (ret < 0) {
                 break;
             }
+            if (stats != null) {
+                stats.phase2Solutions++;
+                stats.branchSolutions[urfIdx * PRE_IDX_MAX + preIdx]++;
+            }
             depth2 = depth2 - ret;
             sol = depth1 + depth2;
             if (preIdx != 0) {
@@ -581,9 +1115,13 @@ public class Search {
                     move[sol++] = Util.preMove[preIdx];
                 }
             }
-            solution = solutionToString();
+            saveSolutionMoves();
+            found = true;
         }
 
+        if (stopError != 0) {
+            return 0;
+        }
         if (depth2 != maxDep2 - 1) { //At least one solution has been found.
             maxDep2 = Math.min(MAX_DEPTH2, sol - length1);
             return probe >= probeMin ? 0 : 1;
@@ -595,9 +1133,15 @@ public class Search {
     //-1: no solution found
     // X: solution with X moves shorter than expectation. Hence, the length of the solution is  depth - X
     private int phase2(int eidx, int esym, int cidx, int csym, int mid, int maxl, int depth, int lm) {
+        if (stats != null) {
+            stats.phase2Nodes++;
+        }
         if (eidx == 0 && cidx == 0 && mid == 0) {
             return maxl;
         }
+        if (--stopCountdown < 0 && checkStop()) {
+            return -1;
+        }
         for (int m = 0; m < 10; m++) {
             if (lm < 0 ? (m == -lm) : Util.ckmv2[lm][m]) {
                 continue;
@@ -608,6 +1152,9 @@ public class Search {
             cidxx >>= 4;
             if (CoordCube.getPruning(CoordCube.MCPermPrun,
                                      cidxx * 24 + CoordCube.MPermConj[midx][csymx]) >= maxl) {
+                if (stats != null) {
+                    stats.phase2Cuts[0]++;
+                }
                 continue;
             }
             int eidxx = CoordCube.EPermMove[eidx][CubieCube.SymMoveUD[esym][m]];
@@ -615,10 +1162,16 @@ public class Search {
             eidxx >>= 4;
             if (CoordCube.getPruning(CoordCube.EPermCCombPrun,
                                      eidxx * 70 + CoordCube.CCombConj[CubieCube.Perm2Comb[cidxx]][CubieCube.SymMultInv[esymx][csymx]]) >= maxl) {
+                if (stats != null) {
+                    stats.phase2Cuts[2]++;
+                }
                 continue;
             }
             if (CoordCube.getPruning(CoordCube.MEPermPrun,
                                      eidxx * 24 + CoordCube.MPermConj[midx][esymx]) >= maxl) {
+                if (stats != null) {
+                    stats.phase2Cuts[1]++;
+                }
                 continue;
             }
             int ret = phase2(eidxx, esymx, cidxx, csymx, midx, maxl - 1, depth + 1, (lm < 0 && m + lm == -5) ? -lm : m);
@@ -630,26 +1183,172 @@ public class Search {
         return -1;
     }
 
-    private String solutionToString() {
-        StringBuffer sb = new StringBuffer();
-        int urf = (verbose & INVERSE_SOLUTION) != 0 ? (urfIdx + 3) % 6 : urfIdx;
-        if (urf < 3) {
-            for (int s = 0; s < sol; s++) {
-                if ((verbose & USE_SEPARATOR) != 0 && s == depth1) {
-                    sb.append(".  ");
+    // Same moves as phase2(), but every tail of exactly maxl moves is collected. Tails that pass the solved state
+    // earlier are cut, they are a shorter solution followed by moves that cancel out.
+    private void phase2All(int eidx, int esym, int cidx, int csym, int mid, int maxl, int depth, int lm) {
+        if (stats != null) {
+            stats.phase2Nodes++;
+        }
+        if (eidx == 0 && cidx == 0 && mid == 0) {
+            if (maxl == 0) {
+                collectEnumSolution(depth);
+            }
+            return;
+        }
+        if (--stopCountdown < 0 && checkStop()) {
+            return;
+        }
+        for (int m = 0; m < 10 && stopError == 0; m++) {
+            if (lm < 0 ? (m == -lm) : Util.ckmv2[lm][m]) {
+                continue;
+            }
+            int midx = CoordCube.MPermMove[mid][m];
+            int cidxx = CoordCube.CPermMove[cidx][CubieCube.SymMove[csym][Util.ud2std[m]]];
+            int csymx = CubieCube.SymMult[cidxx & 0xf][csym];
+            cidxx >>= 4;
+            if (CoordCube.getPruning(CoordCube.MCPermPrun,
+                                     cidxx * 24 + CoordCube.MPermConj[midx][csymx]) >= maxl) {
+                if (stats != null) {
+                    stats.phase2Cuts[0]++;
                 }
-                sb.append(Util.move2str[CubieCube.urfMove[urf][move[s]]]).append(' ');
+                continue;
             }
-        } else {
-            for (int s = sol - 1; s >= 0; s--) {
-                sb.append(Util.move2str[CubieCube.urfMove[urf][move[s]]]).append(' ');
-                if ((verbose & USE_SEPARATOR) != 0 && s == depth1) {
-                    sb.append(".  ");
+            int eidxx = CoordCube.EPermMove[eidx][CubieCube.SymMoveUD[esym][m]];
+            int esymx = CubieCube.SymMult[eidxx & 0xf][esym];
+            eidxx >>= 4;
+            if (CoordCube.getPruning(CoordCube.EPermCCombPrun,
+                                     eidxx * 70 + CoordCube.CCombConj[CubieCube.Perm2Comb[cidxx]][CubieCube.SymMultInv[esymx][csymx]]) >= maxl) {
+                if (stats != null) {
+                    stats.phase2Cuts[2]++;
+                }
+                continue;
+            }
+            if (CoordCube.getPruning(CoordCube.MEPermPrun,
+                                     eidxx * 24 + CoordCube.MPermConj[midx][esymx]) >= maxl) {
+                if (stats != null) {
+                    stats.phase2Cuts[1]++;
                 }
+                continue;
             }
+            move[depth] = Util.ud2std[m];
+            phase2All(eidxx, esymx, cidxx, csymx, midx, maxl - 1, depth + 1, (lm < 0 && m + lm == -5) ? -lm : m);
+        }
+    }
+
+    // move[0, length) plus the pre-move as a solution of the original cube, kept if it still has enumLength moves
+    // after reduce(). Longer ones are found again at their own length, if at all.
+    private void collectEnumSolution(int length) {
+        int n = length;
+        if (preIdx != 0) {
+            move[n++] = Util.preMove[preIdx];
+        }
+        for (int s = 0; s < n; s++) {
+            enumMoves[s] = CubieCube.urfMove[urfIdx][move[urfIdx < 3 ? s : n - 1 - s]];
+        }
+        if (reduce(enumMoves, n) == enumLength) {
+            enumFound.add(java.util.Arrays.copyOf(enumMoves, enumLength));
+            enumCount++;
+            if (stats != null) {
+                stats.phase2Solutions++;
+                stats.branchSolutions[urfIdx * PRE_IDX_MAX + preIdx]++;
+            }
+        }
+    }
+
+    /**
+     * Reduces moves[0, length) in place: turns of the same face are merged or cancelled, also across a turn of the
+     * opposite face, and turns of opposite faces are put in the order U D, R L, F B.
+     * @return the new length
+     */
+    static int reduce(int[] moves, int length) {
+        int n = 0;
+        for (int i = 0; i < length; i++) {
+            int m = moves[i];
+            int axis = m / 3 % 3;
+            // the trailing turns of this axis, at most one per face
+            int run = n;
+            while (run > 0 && moves[run - 1] / 3 % 3 == axis) {
+                run--;
+            }
+            int same = -1;
+            for (int j = run; j < n; j++) {
+                if (moves[j] / 3 == m / 3) {
+                    same = j;
+                }
+            }
+            if (same < 0) {
+                moves[n++] = m;
+            } else {
+                int pow = (moves[same] % 3 + m % 3 + 2) % 4;
+                if (pow == 0) {
+                    System.arraycopy(moves, same + 1, moves, same, n - same - 1);
+                    n--;
+                } else {
+                    moves[same] = m / 3 * 3 + pow - 1;
+                }
+            }
+            if (n - run == 2 && moves[run] > moves[run + 1]) {
+                int t = moves[run];
+                moves[run] = moves[run + 1];
+                moves[run + 1] = t;
+            }
+        }
+        return n;
+    }
+
+    /**
+     * Copies the last solution found by solution() or next() to moves, in the order they have to be applied to the
+     * cube (independent of INVERSE_SOLUTION). See solution(String, int, long, long, int[]) for the move encoding.
+     * @return the number of moves, -1 if no solution has been found
+     */
+    public synchronized int getSolution(int[] moves) {
+        if (!found) {
+            return -1;
+        }
+        System.arraycopy(solutionMoves, 0, moves, 0, solutionLength);
+        return solutionLength;
+    }
+
+    private void saveSolutionMoves() {
+        for (int s = 0; s < sol; s++) {
+            solutionMoves[s] = CubieCube.urfMove[urfIdx][move[urfIdx < 3 ? s : sol - 1 - s]];
+        }
+        solutionLength = sol;
+        solutionDepth1 = depth1;
+        solutionUrfIdx = urfIdx;
+    }
+
+    /**
+     * Renders moves as in the result of solution(), e.g. "R2 U' F ".
+     */
+    public static String toString(int[] moves, int length) {
+        StringBuffer sb = new StringBuffer();
+        for (int s = 0; s < length; s++) {
+            sb.append(Util.move2str[moves[s]]).append(' ');
+        }
+        return sb.toString();
+    }
+
+    private String solutionToString() {
+        StringBuffer sb = new StringBuffer();
+        boolean inverse = (verbose & INVERSE_SOLUTION) != 0;
+        int urf = inverse ? (solutionUrfIdx + 3) % 6 : solutionUrfIdx;
+        // the phase 1 moves were searched on the urf conjugated cube, they come last when that is an inverse.
+        // No separator without phase 2 moves.
+        int separator = (verbose & USE_SEPARATOR) == 0 || solutionDepth1 >= solutionLength ? -1
+                : urf < 3 ? solutionDepth1 : solutionLength - solutionDepth1;
+        for (int s = 0; s < solutionLength; s++) {
+            if (s == separator) {
+                sb.append(".  ");
+            }
+            int m = inverse ? solutionMoves[solutionLength - 1 - s] : solutionMoves[s];
+            sb.append(Util.move2str[inverse ? m / 3 * 3 + 2 - m % 3 : m]).append(' ');
+        }
+        if (separator == solutionLength) {
+            sb.append(".  ");
         }
         if ((verbose & APPEND_LENGTH) != 0) {
-            sb.append("(").append(sol).append("f)");
+            sb.append("(").append(solutionLength).append("f)");
         }
         return sb.toString();
     }
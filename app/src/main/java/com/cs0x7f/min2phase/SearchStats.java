@@ -0,0 +1,278 @@
+package com.cs0x7f.min2phase;
+
+import java.io.IOException;
+
+/**
+ * Node and pruning counters of a Search, collected while enabled with Search.setStatsEnabled(true).
+ * Search.getStats() returns a copy that does not change any more, add() sums copies, e.g. over a set of scrambles.
+ *
+ * Phase 1 nodes are counted by their depth below the pre-moved and URF conjugated start cube. Every move tried in
+ * phase 1 evaluates the phase 1 coordinates of the child, which reads each phase 1 pruning table once, and is cut
+ * off if the pruning value exceeds the remaining depth (the other powers of the axis are skipped as well) or equals
+ * it (only this move is skipped). A branch is one (URF conjugation, pre-move) start of search(). A probe is a phase 1
+ * leaf within the probe limit, it may still be pruned before phase 2 is entered.
+ *
+ * With EXTRA_PRUN_LEVEL > 0 the phase 1 lookups count evaluations of CoordCubeHuge instead.
+ */
+public class SearchStats {
+
+    public static final int UDSLICE_TWIST_PRUN = 0;
+    public static final int UDSLICE_FLIP_PRUN = 1;
+    public static final int TWIST_FLIP_PRUN = 2;
+    public static final int MCPERM_PRUN = 3;
+    public static final int MEPERM_PRUN = 4;
+    public static final int EPERM_CCOMB_PRUN = 5;
+
+    static final String[] TABLE_NAMES = {
+        "UDSliceTwistPrun", "UDSliceFlipPrun", "TwistFlipPrun", "MCPermPrun", "MEPermPrun", "EPermCCombPrun"
+    };
+
+    public static final String CSV_HEADER = "label,counter,index,value";
+
+    static final int MAX_DEPTH = 31;
+    static final int N_BRANCH = 6 * Search.PRE_IDX_MAX;
+
+    long solves;
+    final long[] phase1Nodes = new long[MAX_DEPTH];
+    long phase1Evals;
+    long phase1CutAxis;
+    long phase1CutMove;
+    long probes;
+    long probesPruned;
+    long phase2Entries;
+    long phase2Solutions;
+    long phase2Nodes;
+    // lookups done by initPhase2, indexed by table - MCPERM_PRUN. Those of phase2() follow from the cuts.
+    final long[] probeLookups = new long[3];
+    final long[] phase2Cuts = new long[3];
+    long initPhase2Nanos;
+    // indexed by urfIdx * Search.PRE_IDX_MAX + preIdx
+    final long[] branchTries = new long[N_BRANCH];
+    final long[] branchProbes = new long[N_BRANCH];
+    final long[] branchSolutions = new long[N_BRANCH];
+
+    SearchStats() {
+    }
+
+    SearchStats copy() {
+        SearchStats s = new SearchStats();
+        s.add(this);
+        return s;
+    }
+
+    void countPhase1Move(int prun, int maxl) {
+        phase1Evals++;
+        if (prun > maxl) {
+            phase1CutAxis++;
+        } else if (prun == maxl) {
+            phase1CutMove++;
+        }
+    }
+
+    /**
+     * Adds the counters of other to this one.
+     * @return this
+     */
+    public SearchStats add(SearchStats other) {
+        solves += other.solves;
+        addAll(phase1Nodes, other.phase1Nodes);
+        phase1Evals += other.phase1Evals;
+        phase1CutAxis += other.phase1CutAxis;
+        phase1CutMove += other.phase1CutMove;
+        probes += other.probes;
+        probesPruned += other.probesPruned;
+        phase2Entries += other.phase2Entries;
+        phase2Solutions += other.phase2Solutions;
+        phase2Nodes += other.phase2Nodes;
+        addAll(probeLookups, other.probeLookups);
+        addAll(phase2Cuts, other.phase2Cuts);
+        initPhase2Nanos += other.initPhase2Nanos;
+        addAll(branchTries, other.branchTries);
+        addAll(branchProbes, other.branchProbes);
+        addAll(branchSolutions, other.branchSolutions);
+        return this;
+    }
+
+    private static void addAll(long[] to, long[] from) {
+        for (int i = 0; i < to.length; i++) {
+            to[i] += from[i];
+        }
+    }
+
+    /**
+     * This method returns the number of solution() and next() calls counted
+     */
+    public long getSolves() {
+        return solves;
+    }
+
+    public long getPhase1Nodes(int depth) {
+        return phase1Nodes[depth];
+    }
+
+    public long getPhase1Nodes() {
+        long sum = 0;
+        for (long n : phase1Nodes) {
+            sum += n;
+        }
+        return sum;
+    }
+
+    /**
+     * This method returns the number of phase 1 moves cut off with prun > maxl, which skip the rest of the axis
+     */
+    public long getPhase1AxisCutoffs() {
+        return phase1CutAxis;
+    }
+
+    /**
+     * This method returns the number of phase 1 moves cut off with prun == maxl
+     */
+    public long getPhase1MoveCutoffs() {
+        return phase1CutMove;
+    }
+
+    public long getProbes() {
+        return probes;
+    }
+
+    /**
+     * This method returns the number of probes rejected by the phase 2 pruning tables before phase 2 was entered
+     */
+    public long getPrunedProbes() {
+        return probesPruned;
+    }
+
+    /**
+     * This method returns the number of phase 2 searches started, one per probe and tried phase 2 depth
+     */
+    public long getPhase2Entries() {
+        return phase2Entries;
+    }
+
+    public long getPhase2Solutions() {
+        return phase2Solutions;
+    }
+
+    public long getPhase2Nodes() {
+        return phase2Nodes;
+    }
+
+    /**
+     * This method returns the number of phase 2 moves cut off by table, one of MCPERM_PRUN, MEPERM_PRUN and
+     * EPERM_CCOMB_PRUN
+     */
+    public long getPhase2Cutoffs(int table) {
+        return phase2Cuts[table - MCPERM_PRUN];
+    }
+
+    // every move tried in phase2() is either cut off or entered as a child node
+    private long getPhase2Moves() {
+        return phase2Cuts[0] + phase2Cuts[1] + phase2Cuts[2] + phase2Nodes - phase2Entries;
+    }
+
+    /**
+     * This method returns the number of reads of a pruning table, see the constants
+     */
+    public long getLookups(int table) {
+        switch (table) {
+            case UDSLICE_TWIST_PRUN:
+            case UDSLICE_FLIP_PRUN:
+                return phase1Evals;
+            case TWIST_FLIP_PRUN:
+                return Search.USE_TWIST_FLIP_PRUN ? phase1Evals : 0;
+            case MCPERM_PRUN:
+                return probeLookups[0] + getPhase2Moves();
+            case EPERM_CCOMB_PRUN:
+                // phase2() reads it for the moves MCPermPrun lets through
+                return probeLookups[2] + getPhase2Moves() - phase2Cuts[0];
+            case MEPERM_PRUN:
+                return probeLookups[1] + getPhase2Moves() - phase2Cuts[0] - phase2Cuts[2];
+        }
+        throw new IllegalArgumentException("table " + table);
+    }
+
+    /**
+     * This method returns the time spent in initPhase2, which includes the phase 2 search
+     */
+    public long getInitPhase2Nanos() {
+        return initPhase2Nanos;
+    }
+
+    /**
+     * This method returns how often search() started phase 1 on the cube conjugated by urfIdx (0..5) with the
+     * pre-move preIdx (0..Search.PRE_IDX_MAX - 1)
+     */
+    public long getBranchTries(int urfIdx, int preIdx) {
+        return branchTries[urfIdx * Search.PRE_IDX_MAX + preIdx];
+    }
+
+    public long getBranchProbes(int urfIdx, int preIdx) {
+        return branchProbes[urfIdx * Search.PRE_IDX_MAX + preIdx];
+    }
+
+    public long getBranchSolutions(int urfIdx, int preIdx) {
+        return branchSolutions[urfIdx * Search.PRE_IDX_MAX + preIdx];
+    }
+
+    /**
+     * This method returns the solutions found per probe of a branch, 0 if it was never probed
+     */
+    public double getBranchHitRate(int urfIdx, int preIdx) {
+        long n = getBranchProbes(urfIdx, preIdx);
+        return n == 0 ? 0 : (double) getBranchSolutions(urfIdx, preIdx) / n;
+    }
+
+    /**
+     * Writes all counters as CSV rows "label,counter,index,value" (see CSV_HEADER), without the header. Per-depth and
+     * per-branch counters are only written where they are not 0, a branch index is urfIdx * PRE_IDX_MAX + preIdx.
+     */
+    public void writeCsv(Appendable out, String label) throws IOException {
+        row(out, label, "solves", "", solves);
+        row(out, label, "probes", "", probes);
+        row(out, label, "probes_pruned", "", probesPruned);
+        row(out, label, "phase1_evals", "", phase1Evals);
+        row(out, label, "phase1_cut_axis", "", phase1CutAxis);
+        row(out, label, "phase1_cut_move", "", phase1CutMove);
+        row(out, label, "phase2_entries", "", phase2Entries);
+        row(out, label, "phase2_solutions", "", phase2Solutions);
+        row(out, label, "phase2_nodes", "", phase2Nodes);
+        row(out, label, "init_phase2_ns", "", initPhase2Nanos);
+        for (int t = 0; t < TABLE_NAMES.length; t++) {
+            row(out, label, "lookups", TABLE_NAMES[t], getLookups(t));
+        }
+        for (int t = MCPERM_PRUN; t < TABLE_NAMES.length; t++) {
+            row(out, label, "phase2_cutoffs", TABLE_NAMES[t], getPhase2Cutoffs(t));
+        }
+        nonZeroRows(out, label, "phase1_nodes", phase1Nodes);
+        nonZeroRows(out, label, "branch_tries", branchTries);
+        nonZeroRows(out, label, "branch_probes", branchProbes);
+        nonZeroRows(out, label, "branch_solutions", branchSolutions);
+    }
+
+    /**
+     * This method returns CSV_HEADER and the rows of writeCsv()
+     */
+    public String toCsv(String label) {
+        StringBuilder sb = new StringBuilder(CSV_HEADER).append('\n');
+        try {
+            writeCsv(sb, label);
+        } catch (IOException e) {
+            throw new AssertionError(e); // StringBuilder does not throw
+        }
+        return sb.toString();
+    }
+
+    private static void nonZeroRows(Appendable out, String label, String counter, long[] values) throws IOException {
+        for (int i = 0; i < values.length; i++) {
+            if (values[i] != 0) {
+                row(out, label, counter, Integer.toString(i), values[i]);
+            }
+        }
+    }
+
+    private static void row(Appendable out, String label, String counter, String index, long value) throws IOException {
+        out.append(label).append(',').append(counter).append(',').append(index).append(',')
+            .append(Long.toString(value)).append('\n');
+    }
+}
@@ -0,0 +1,353 @@
+package com.cs0x7f.min2phase;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Bounded LRU cache of solutions in front of Search.
+ * Cubes are stored as the smallest of their 48 conjugates S^-1 * c * S (16 symmetries of CubeSym times the 3 URF
+ * rotations), so a cube and all states symmetric to it share one entry. The cached moves are mapped back through
+ * the same symmetry on lookup.
+ *
+ *     String result = cache.get(search, facelets, maxDepth, verbose);
+ *     if (result == null) {
+ *         result = search.solution(facelets, maxDepth, probeMax, probeMin, verbose);
+ *         cache.put(search);
+ *     }
+ *
+ * Solutions with USE_SEPARATOR or OPTIMAL_SOLUTION are never served from the cache, the phase split and the
+ * optimality of a cached solution are not known.
+ */
+public class SolutionCache {
+
+    private static final int FILE_MAGIC = 0x4d325043; // "M2PC"
+
+    private static final int N_SYM = 48;
+
+    // symMove[s][m]: the move m' with conj_s(m) == m', conj_s as in canonical(). symMoveInv is the inverse mapping.
+    private static int[][] symMove;
+    private static int[][] symMoveInv;
+
+    private final int capacity;
+    private final LinkedHashMap<Key, byte[]> entries;
+    private final int[] moves = new int[31];
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    /**
+     * @param capacity
+     *      maximum number of cached states, the least recently used one is evicted first.
+     */
+    public SolutionCache(int capacity) {
+        // the cache itself only needs the move and symmetry cubes, solution() needs the rest of INIT_SEARCHABLE
+        Search.initSearchable();
+        initSymMove();
+        this.capacity = capacity;
+        this.entries = new LinkedHashMap<Key, byte[]>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, byte[]> eldest) {
+                if (size() > SolutionCache.this.capacity) {
+                    evictions++;
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    private static synchronized void initSymMove() {
+        if (symMove != null) {
+            return;
+        }
+        int[][] table = new int[N_SYM][18];
+        int[][] inv = new int[N_SYM][18];
+        long[] moveCorn = new long[18];
+        long[] moveEdge = new long[18];
+        for (int m = 0; m < 18; m++) {
+            moveCorn[m] = CubieCube.moveCube[m].getCornPacked();
+            moveEdge[m] = CubieCube.moveCube[m].getEdgePacked();
+        }
+        for (int s = 0; s < N_SYM; s++) {
+            for (int m = 0; m < 18; m++) {
+                long corn = conjCorn(moveCorn[m], s);
+                long edge = conjEdge(moveEdge[m], s);
+                table[s][m] = -1;
+                for (int mx = 0; mx < 18; mx++) {
+                    if (moveCorn[mx] == corn && moveEdge[mx] == edge) {
+                        table[s][m] = mx;
+                    }
+                }
+                assert table[s][m] >= 0;
+                inv[s][table[s][m]] = m;
+            }
+        }
+        symMoveInv = inv;
+        symMove = table;
+    }
+
+    // conj_s = CubeSym conjugation by s % 16 after s / 16 URF conjugations, an automorphism of the cube group
+    private static long conjCorn(long corn, int s) {
+        for (int u = 0; u < s >> 4; u++) {
+            corn = CubieCube.packedCornMult(CubieCube.packedCornMult(CubieCube.urf2Corn, corn), CubieCube.urf1Corn);
+        }
+        return CubieCube.packedCornConjugate(corn, s & 0xf);
+    }
+
+    private static long conjEdge(long edge, int s) {
+        for (int u = 0; u < s >> 4; u++) {
+            edge = CubieCube.packedEdgeMult(CubieCube.packedEdgeMult(CubieCube.urf2Edge, edge), CubieCube.urf1Edge);
+        }
+        return CubieCube.packedEdgeConjugate(edge, s & 0xf);
+    }
+
+    /**
+     * This method returns the canonical key of c and the symmetry s with conj_s(c) == key in key.sym
+     */
+    private static Key canonical(CubieCube c) {
+        long corn = c.getCornPacked();
+        long edge = c.getEdgePacked();
+        Key key = new Key(Long.MAX_VALUE, Long.MAX_VALUE);
+        for (int u = 0; u < 3; u++) {
+            if (u != 0) {
+                corn = CubieCube.packedCornMult(CubieCube.packedCornMult(CubieCube.urf2Corn, corn), CubieCube.urf1Corn);
+                edge = CubieCube.packedEdgeMult(CubieCube.packedEdgeMult(CubieCube.urf2Edge, edge), CubieCube.urf1Edge);
+            }
+            for (int k = 0; k < 16; k++) {
+                long cc = CubieCube.packedCornConjugate(corn, k);
+                if (cc > key.corn) {
+                    continue;
+                }
+                long ce = CubieCube.packedEdgeConjugate(edge, k);
+                if (cc < key.corn || ce < key.edge) {
+                    key.corn = cc;
+                    key.edge = ce;
+                    key.sym = u << 4 | k;
+                }
+            }
+        }
+        return key;
+    }
+
+    private static boolean isCacheable(int verbose) {
+        return (verbose & (Search.USE_SEPARATOR | Search.OPTIMAL_SOLUTION)) == 0;
+    }
+
+    /**
+     * Looks up the cube given as facelets, see Search.solution() for the parameters.
+     * @return the cached solution formatted as Search.solution() would, or null if the state is not cached, the
+     *      cached solution is longer than maxDepth or verbose is not cacheable. Invalid cubes give the same error as
+     *      Search.solution().
+     */
+    public synchronized String get(Search search, String facelets, int maxDepth, int verbose) {
+        if (!isCacheable(verbose)) {
+            return null;
+        }
+        Key key;
+        synchronized (search) {
+            int check = search.verify(facelets);
+            if (check != 0) {
+                return "Error " + Math.abs(check);
+            }
+            key = canonical(search.cc);
+        }
+        int length = lookup(key, maxDepth, moves);
+        return length < 0 ? null : toString(moves, length, verbose);
+    }
+
+    /**
+     * Same as get(Search, String, int, int) without rendering the solution, see Search.solution(String, int, long,
+     * long, int[]) for the moves written to moves.
+     * @return the number of moves, -1 if the state is not cached, the cached solution is longer than maxDepth or the
+     *      facelets are invalid.
+     */
+    public synchronized int get(Search search, String facelets, int maxDepth, int[] moves) {
+        Key key;
+        synchronized (search) {
+            if (search.verify(facelets) != 0) {
+                return -1;
+            }
+            key = canonical(search.cc);
+        }
+        return lookup(key, maxDepth, moves);
+    }
+
+    private int lookup(Key key, int maxDepth, int[] moves) {
+        byte[] sol = entries.get(key);
+        if (sol == null || sol.length > maxDepth) {
+            misses++;
+            return -1;
+        }
+        hits++;
+        // conj_s(c) * M' == id  =>  c * conj_s^-1(M') == id
+        int[] back = symMoveInv[key.sym];
+        for (int i = 0; i < sol.length; i++) {
+            moves[i] = back[sol[i]];
+        }
+        return sol.length;
+    }
+
+    /**
+     * Stores the last solution found by search.solution() or search.next() under the cube that call solved, also
+     * when search verified other facelets since, e.g. in get(). Does nothing if none was found.
+     */
+    public synchronized void put(Search search) {
+        int length;
+        Key key;
+        synchronized (search) {
+            length = search.getSolution(moves);
+            if (length < 0) {
+                return;
+            }
+            key = canonical(search.searchCube);
+        }
+        int[] fwd = symMove[key.sym];
+        byte[] sol = new byte[length];
+        for (int i = 0; i < length; i++) {
+            sol[i] = (byte) fwd[moves[i]];
+        }
+        byte[] old = entries.get(key);
+        if (old == null || old.length > length) {
+            entries.put(key, sol);
+        }
+    }
+
+    /**
+     * Same as search.solution(), answered from the cache when possible.
+     */
+    public String solution(Search search, String facelets, int maxDepth, long probeMax, long probeMin, int verbose) {
+        String result = get(search, facelets, maxDepth, verbose);
+        if (result == null) {
+            result = search.solution(facelets, maxDepth, probeMax, probeMin, verbose);
+            if (isCacheable(verbose) && !result.startsWith("Error")) {
+                put(search);
+            }
+        }
+        return result;
+    }
+
+    private static String toString(int[] moves, int length, int verbose) {
+        if ((verbose & (Search.INVERSE_SOLUTION | Search.APPEND_LENGTH)) == 0) {
+            return Search.toString(moves, length);
+        }
+        StringBuffer sb = new StringBuffer();
+        if ((verbose & Search.INVERSE_SOLUTION) == 0) {
+            for (int s = 0; s < length; s++) {
+                sb.append(Util.move2str[moves[s]]).append(' ');
+            }
+        } else {
+            for (int s = length - 1; s >= 0; s--) {
+                sb.append(Util.move2str[moves[s] / 3 * 3 + 2 - moves[s] % 3]).append(' ');
+            }
+        }
+        if ((verbose & Search.APPEND_LENGTH) != 0) {
+            sb.append("(").append(length).append("f)");
+        }
+        return sb.toString();
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public int capacity() {
+        return capacity;
+    }
+
+    public synchronized long getHitCount() {
+        return hits;
+    }
+
+    public synchronized long getMissCount() {
+        return misses;
+    }
+
+    public synchronized long getEvictionCount() {
+        return evictions;
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+        hits = misses = evictions = 0;
+    }
+
+    /**
+     * Writes all entries to file, least recently used first.
+     */
+    public synchronized void save(File file) throws IOException {
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+        try {
+            out.writeInt(FILE_MAGIC);
+            out.writeInt(entries.size());
+            for (Map.Entry<Key, byte[]> e : entries.entrySet()) {
+                out.writeLong(e.getKey().corn);
+                out.writeLong(e.getKey().edge);
+                out.writeByte(e.getValue().length);
+                out.write(e.getValue());
+            }
+        } finally {
+            out.close();
+        }
+    }
+
+    /**
+     * Adds the entries of a file written by save(). Missing files are ignored.
+     * @return the number of entries read
+     */
+    public synchronized int load(File file) throws IOException {
+        if (!file.exists()) {
+            return 0;
+        }
+        DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+        try {
+            if (in.readInt() != FILE_MAGIC) {
+                throw new IOException("Not a solution cache file: " + file);
+            }
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                Key key = new Key(in.readLong(), in.readLong());
+                byte[] sol = new byte[in.readUnsignedByte()];
+                in.readFully(sol);
+                for (byte m : sol) {
+                    if (m < 0 || m >= 18) {
+                        throw new IOException("Corrupt solution cache file: " + file);
+                    }
+                }
+                entries.put(key, sol);
+            }
+            return count;
+        } finally {
+            in.close();
+        }
+    }
+
+    private static class Key {
+        long corn;
+        long edge;
+        int sym;
+
+        Key(long corn, long edge) {
+            this.corn = corn;
+            this.edge = edge;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Key && ((Key) o).corn == corn && ((Key) o).edge == edge;
+        }
+
+        @Override
+        public int hashCode() {
+            long h = corn * 0x9e3779b97f4a7c15L ^ edge;
+            return (int) (h ^ h >>> 32);
+        }
+    }
+}
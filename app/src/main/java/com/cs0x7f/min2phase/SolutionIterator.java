@@ -0,0 +1,169 @@
+package com.cs0x7f.min2phase;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * Lazily yields distinct solutions of one cube as arrays of move indices (see Util.move2str), in the order they have
+ * to be applied. Created by Search.solutions().
+ *
+ * The first solution is the best one the normal search finds within probeMin probes. After that the search is not
+ * narrowed any more: every solution of that length the two-phase search can reach is enumerated, then those one move
+ * longer and so on up to maxDepth, so the lengths never decrease. That is every phase 2 tail of every phase 1 path,
+ * for all URF conjugations and pre-moves. It is not every sequence of that length that solves the cube: one whose
+ * phase 1 part leaves and re-enters the phase 2 group on its last moves is not found, for instance. Solutions are
+ * only computed in hasNext(), one phase 1 node at a time.
+ *
+ * Solutions are reduced (see Search.reduce()): a sequence that turns the same face twice in a row, also across a turn
+ * of the opposite face, only comes as the shorter merged one, and opposite faces come in the order U D, R L, F B.
+ * No solution is returned twice.
+ *
+ * The iteration ends when the solutions are exhausted, at the deadline or after cancel(), which may be called from any
+ * thread.
+ */
+public class SolutionIterator implements Iterator<int[]> {
+
+    private final Search search;
+    private final int maxDepth;
+    private final long probeMin;
+    // read by Search, which stops in the middle of a phase 1 or phase 2 search on either of them
+    final long deadline;
+    final CancelToken token = new CancelToken();
+    private int error;
+
+    private int length = -1;// length of the current pass, -1 before the first solution
+    private boolean resume;
+    private final List<int[]> found = new ArrayList<int[]>();
+    private int foundPos;
+    private final Set<Moves> seen = new HashSet<Moves>();
+
+    private int[] next;
+    private long nextProbe;
+    private long probe;
+    private boolean done;
+
+    SolutionIterator(Search search, int maxDepth, long probeMin, long deadline) {
+        this.search = search;
+        this.maxDepth = maxDepth;
+        this.probeMin = probeMin;
+        this.deadline = deadline;
+    }
+
+    void setError(int error) {
+        this.error = error;
+        done = true;
+    }
+
+    /**
+     * This method returns 0 for a valid cube, otherwise the error code of Search.solution(), negated.
+     */
+    public int getError() {
+        return error;
+    }
+
+    /**
+     * Ends the iteration, a search running in hasNext() on another thread returns within Search.STOP_CHECK_INTERVAL
+     * search nodes.
+     */
+    public void cancel() {
+        token.cancel();
+    }
+
+    public boolean isCancelled() {
+        return token.isCancelled();
+    }
+
+    private boolean isStopped() {
+        return token.isCancelled() || deadline != 0 && System.nanoTime() - deadline > 0;
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (next == null && !done) {
+            next = advance();
+            done = next == null;
+        }
+        return next != null;
+    }
+
+    @Override
+    public int[] next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        int[] ret = next;
+        next = null;
+        probe = nextProbe;
+        return ret;
+    }
+
+    @Override
+    public void remove() {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * This method returns the number of phase 2 probes spent until the solution last returned by next() was found.
+     */
+    public long getProbeCount() {
+        return probe;
+    }
+
+    private int[] advance() {
+        while (!isStopped()) {
+            if (foundPos < found.size()) {
+                int[] moves = found.get(foundPos++);
+                if (seen.add(new Moves(moves))) {
+                    return moves;
+                }
+                continue;
+            }
+            if (length < 0) {
+                int[] moves = new int[31];
+                length = search.firstSolution(this, maxDepth, probeMin, moves);
+                if (length < 0) {
+                    return null;
+                }
+                nextProbe = search.numberOfProbes();
+                length = Search.reduce(moves, length);
+                moves = Arrays.copyOf(moves, length);
+                seen.add(new Moves(moves));
+                return moves;
+            }
+            if (length > maxDepth) {
+                return null;
+            }
+            found.clear();
+            foundPos = 0;
+            resume = search.enumerate(this, length, resume, found) > 0;
+            nextProbe = search.numberOfProbes();
+            if (!resume) {
+                length++;
+            }
+        }
+        return null;
+    }
+
+    private static class Moves {
+        final int[] moves;
+
+        Moves(int[] moves) {
+            this.moves = moves;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Moves && Arrays.equals(moves, ((Moves) o).moves);
+        }
+
+        @Override
+        public int hashCode() {
+            return Arrays.hashCode(moves);
+        }
+    }
+}
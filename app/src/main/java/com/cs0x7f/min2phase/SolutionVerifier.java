@@ -0,0 +1,269 @@
+package com.cs0x7f.min2phase;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Checks that a move sequence solves a cube: the moves are applied to the CubieCube of the facelets with the packed
+ * products of CubieCube and the result is compared with the solved cube. Only the 18 move cubes are needed, not the
+ * tables of Search.init(), a check takes about a microsecond.
+ *
+ *     boolean ok = SolutionVerifier.verify(facelets, search.solution(facelets, 21, 100000, 0, 0));
+ *
+ * Moves are face * 3 + power as in Search.solution(String, int, long, long, int[]), or strings as returned by
+ * Search.solution() without INVERSE_SOLUTION ("." and a "(21f)" length are skipped).
+ */
+public class SolutionVerifier {
+
+    private static long[] moveCorn;
+    private static long[] moveEdge;
+    private static final long SOLVED_CORN = new CubieCube().getCornPacked();
+    private static final long SOLVED_EDGE = new CubieCube().getEdgePacked();
+
+    private SolutionVerifier() {
+    }
+
+    private static synchronized void initMoves() {
+        if (moveCorn != null) {
+            return;
+        }
+        CubieCube.initMove();
+        long[] corn = new long[18];
+        long[] edge = new long[18];
+        for (int m = 0; m < 18; m++) {
+            corn[m] = CubieCube.moveCube[m].getCornPacked();
+            edge[m] = CubieCube.moveCube[m].getEdgePacked();
+        }
+        moveEdge = edge;
+        moveCorn = corn;
+    }
+
+    /**
+     * This method returns whether the first length moves solve the cube, false for invalid facelets or moves
+     */
+    public static boolean verify(String facelets, int[] moves, int length) {
+        CubieCube cc = toCubieCube(facelets);
+        return cc != null && moves != null && length >= 0 && length <= moves.length && isSolvedBy(cc, moves, length);
+    }
+
+    public static boolean verify(String facelets, int[] moves) {
+        return verify(facelets, moves, moves == null ? 0 : moves.length);
+    }
+
+    public static boolean verify(String facelets, String solution) {
+        int[] moves = parseMoves(solution);
+        return moves != null && verify(facelets, moves);
+    }
+
+    private static boolean isSolvedBy(CubieCube cc, int[] moves, int length) {
+        initMoves();
+        long corn = cc.getCornPacked();
+        long edge = cc.getEdgePacked();
+        for (int i = 0; i < length; i++) {
+            int m = moves[i];
+            if (m < 0 || m >= 18) {
+                return false;
+            }
+            corn = CubieCube.packedCornMult(corn, moveCorn[m]);
+            edge = CubieCube.packedEdgeMult(edge, moveEdge[m]);
+        }
+        return corn == SOLVED_CORN && edge == SOLVED_EDGE;
+    }
+
+    /**
+     * This method returns the cube of the facelets, colors named by the centers as in Search.solution(), null if the
+     * facelets are no valid cube
+     */
+    static CubieCube toCubieCube(String facelets) {
+        if (facelets == null || facelets.length() < 54) {
+            return null;
+        }
+        byte[] f = new byte[54];
+        int count = 0;
+        for (int i = 0; i < 54; i++) {
+            f[i] = -1;
+            for (int c = 0; c < 6; c++) {
+                if (facelets.charAt(i) == facelets.charAt(Util.centerFacelet[c])) {
+                    f[i] = (byte) c;
+                    break;
+                }
+            }
+            if (f[i] < 0) {
+                return null;
+            }
+            count += 1 << (f[i] << 2);
+        }
+        if (count != 0x999999) {
+            return null;
+        }
+        CubieCube cc = new CubieCube();
+        Util.toCubieCube(f, cc);
+        return cc.verify() == 0 ? cc : null;
+    }
+
+    /**
+     * This method returns the moves of a solution string like "R2 U' F", null if it is not one
+     */
+    public static int[] parseMoves(String solution) {
+        if (solution == null) {
+            return null;
+        }
+        String trimmed = solution.trim();
+        if (trimmed.isEmpty()) {
+            return new int[0];
+        }
+        String[] tokens = trimmed.split("\\s+");
+        int[] moves = new int[tokens.length];
+        int n = 0;
+        for (String token : tokens) {
+            if (token.equals(".") || token.startsWith("(") && token.endsWith("f)")) {
+                continue;
+            }
+            int face = token.length() <= 2 ? "URFDLB".indexOf(token.charAt(0)) : -1;
+            int power = token.length() == 1 ? 0 : "2'".indexOf(token.charAt(1)) + 1;
+            if (face < 0 || power < 0 || token.length() == 2 && power == 0) {
+                return null;
+            }
+            moves[n++] = face * 3 + power;
+        }
+        return Arrays.copyOf(moves, n);
+    }
+
+    /**
+     * Result of a batch verification.
+     */
+    public static class Report {
+        private final int count;
+        private final int[] failures;
+        private final long moves;
+        private final long nanos;
+        private final int threads;
+
+        Report(int count, int[] failures, long moves, long nanos, int threads) {
+            this.count = count;
+            this.failures = failures;
+            this.moves = moves;
+            this.nanos = nanos;
+            this.threads = threads;
+        }
+
+        public int getCount() {
+            return count;
+        }
+
+        /**
+         * This method returns the indices of the solutions that do not solve their cube, ascending
+         */
+        public int[] getFailures() {
+            return failures.clone();
+        }
+
+        public boolean isAllSolved() {
+            return failures.length == 0;
+        }
+
+        public long getNanos() {
+            return nanos;
+        }
+
+        public double getSolutionsPerSecond() {
+            return nanos == 0 ? 0 : count * 1e9 / nanos;
+        }
+
+        public double getMovesPerSecond() {
+            return nanos == 0 ? 0 : moves * 1e9 / nanos;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%d solutions, %d failed, %d threads, %.3f ms, %.0f solutions/s, %.0f moves/s",
+                                 count, failures.length, threads, nanos / 1e6, getSolutionsPerSecond(),
+                                 getMovesPerSecond());
+        }
+    }
+
+    /**
+     * Verifies moves[i] against facelets[i] for every i on the given number of threads, a null moves[i] fails.
+     */
+    public static Report verifyAll(final String[] facelets, final int[][] moves, int threads) {
+        return verifyAll(facelets.length, threads, new Check() {
+            @Override
+            public int check(int i) {
+                return moves[i] != null && verify(facelets[i], moves[i]) ? moves[i].length : -1;
+            }
+        });
+    }
+
+    /**
+     * Verifies solutions[i] against facelets[i] for every i on the given number of threads, see parseMoves().
+     */
+    public static Report verifyAll(final String[] facelets, final String[] solutions, int threads) {
+        return verifyAll(facelets.length, threads, new Check() {
+            @Override
+            public int check(int i) {
+                int[] moves = parseMoves(solutions[i]);
+                return moves != null && verify(facelets[i], moves) ? moves.length : -1;
+            }
+        });
+    }
+
+    private interface Check {
+        // the number of moves applied, -1 if the solution fails
+        int check(int i);
+    }
+
+    private static Report verifyAll(final int count, int threads, final Check check) {
+        initMoves();
+        threads = Math.max(1, Math.min(threads, count));
+        long start = System.nanoTime();
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        List<Future<long[]>> chunks = new ArrayList<Future<long[]>>();
+        try {
+            for (int t = 0; t < threads; t++) {
+                final int from = (int) ((long) count * t / threads);
+                final int to = (int) ((long) count * (t + 1) / threads);
+                chunks.add(executor.submit(new Callable<long[]>() {
+                    // [moves applied, failed indices...]
+                    @Override
+                    public long[] call() {
+                        long[] ret = new long[1 + to - from];
+                        int n = 1;
+                        for (int i = from; i < to; i++) {
+                            int moves = check.check(i);
+                            if (moves < 0) {
+                                ret[n++] = i;
+                            } else {
+                                ret[0] += moves;
+                            }
+                        }
+                        return Arrays.copyOf(ret, n);
+                    }
+                }));
+            }
+            long moves = 0;
+            int[] failures = new int[count];
+            int n = 0;
+            for (Future<long[]> chunk : chunks) {
+                long[] ret = chunk.get();
+                moves += ret[0];
+                for (int i = 1; i < ret.length; i++) {
+                    failures[n++] = (int) ret[i];
+                }
+            }
+            return new Report(count, Arrays.copyOf(failures, n), moves, System.nanoTime() - start, threads);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Verification interrupted", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Verification failed", e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,217 @@
+package com.cs0x7f.min2phase;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.reflect.Array;
+import java.nio.ByteBuffer;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * The tables of CoordCube.init() (and the sym2raw tables of CubieCube it fills) as a compressed resource, generated
+ * once at build time by the generateSolverTables task of app/build.gradle:
+ *
+ *     java -cp classes com.cs0x7f.min2phase.Tables out/com/cs0x7f/min2phase/tables.gz
+ *
+ * Search.init() loads RESOURCE next to this class and falls back to CoordCube.init() if it is missing, broken, of
+ * another FORMAT_VERSION or written with other USE_TWIST_FLIP_PRUN / EXTRA_PRUN_LEVEL settings.
+ *
+ * Format: GZIP of MAGIC, FORMAT_VERSION and config() as big endian ints, then every array of tables() as its number
+ * of elements and the elements, big endian. A char[][] is written row by row. The GZIP trailer checks the data.
+ * FORMAT_VERSION has to be raised whenever a table changes, e.g. a new move order or a new pruning depth.
+ */
+public class Tables {
+
+    static final String RESOURCE = "tables.gz";
+
+    private static final int MAGIC = 0x4d325054; // "M2PT"
+    private static final int FORMAT_VERSION = 1;
+
+    private Tables() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 1) {
+            System.err.println("usage: Tables <output file>");
+            System.exit(1);
+        }
+        long t = System.nanoTime();
+        CubieCube.initMove();
+        CubieCube.initSym();
+        CoordCube.init();
+        long gen = System.nanoTime() - t;
+        File file = new File(args[0]);
+        File dir = file.getAbsoluteFile().getParentFile();
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            throw new IOException("cannot create " + dir);
+        }
+        OutputStream out = new FileOutputStream(file);
+        try {
+            write(out);
+        } finally {
+            out.close();
+        }
+        System.out.println("Tables generated in " + gen / 1000000 + " ms, " + file + ": " + file.length() + " bytes");
+    }
+
+    private static int config() {
+        return (Search.USE_TWIST_FLIP_PRUN ? 1 : 0) | Search.EXTRA_PRUN_LEVEL << 1;
+    }
+
+    // the arrays in file order, the R2S tables are allocated here as CubieCube.init*Sym2Raw() does
+    private static Object[] tables() {
+        if (CubieCube.FlipR2S == null) {
+            CubieCube.FlipR2S = new char[CoordCube.N_FLIP];
+        }
+        if (CubieCube.TwistR2S == null) {
+            CubieCube.TwistR2S = new char[CoordCube.N_TWIST];
+        }
+        if (CubieCube.EPermR2S == null) {
+            CubieCube.EPermR2S = new char[40320];
+        }
+        return new Object[] {
+            CubieCube.EPermS2R, CubieCube.EPermR2S, CubieCube.SymStatePerm, CubieCube.MtoEPerm, CubieCube.Perm2Comb,
+            CubieCube.FlipS2R, CubieCube.FlipR2S, CubieCube.SymStateFlip, CubieCube.FlipS2RF,
+            CubieCube.TwistS2R, CubieCube.TwistR2S, CubieCube.SymStateTwist,
+            CoordCube.CPermMove, CoordCube.EPermMove, CoordCube.MPermMove, CoordCube.MPermConj,
+            CoordCube.CCombMove, CoordCube.CCombConj, CoordCube.MEPermPrun, CoordCube.MCPermPrun,
+            CoordCube.EPermCCombPrun, CoordCube.FlipMove, CoordCube.TwistMove, CoordCube.UDSliceMove,
+            CoordCube.UDSliceConj, CoordCube.TwistFlipPrun, CoordCube.UDSliceTwistPrun, CoordCube.UDSliceFlipPrun
+        };
+    }
+
+    /**
+     * Writes the tables, CoordCube.init() must have been called.
+     */
+    static void write(OutputStream os) throws IOException {
+        GZIPOutputStream gz = new GZIPOutputStream(os, 1 << 16);
+        DataOutputStream out = new DataOutputStream(gz);
+        out.writeInt(MAGIC);
+        out.writeInt(FORMAT_VERSION);
+        out.writeInt(config());
+        for (Object table : tables()) {
+            if (table == null) {
+                out.writeInt(0);
+            } else if (table instanceof char[][]) {
+                for (char[] row : (char[][]) table) {
+                    out.writeInt(row.length);
+                    for (char c : row) {
+                        out.writeChar(c);
+                    }
+                }
+            } else if (table instanceof char[]) {
+                char[] a = (char[]) table;
+                out.writeInt(a.length);
+                for (char c : a) {
+                    out.writeChar(c);
+                }
+            } else if (table instanceof int[]) {
+                int[] a = (int[]) table;
+                out.writeInt(a.length);
+                for (int i : a) {
+                    out.writeInt(i);
+                }
+            } else {
+                byte[] a = (byte[]) table;
+                out.writeInt(a.length);
+                out.write(a);
+            }
+        }
+        out.flush();
+        gz.finish();
+    }
+
+    /**
+     * Fills the tables from RESOURCE, CubieCube.initMove() and initSym() must have been called.
+     * @return false, with no table changed, if the resource is missing or does not fit
+     */
+    static boolean load() {
+        InputStream in = Tables.class.getResourceAsStream(RESOURCE);
+        if (in == null) {
+            return false;
+        }
+        try {
+            try {
+                return read(in);
+            } finally {
+                in.close();
+            }
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    // inflates everything first: the tables are only touched once the header, the sizes and the GZIP check passed
+    static boolean read(InputStream is) throws IOException {
+        GZIPInputStream gz = new GZIPInputStream(is, 1 << 16);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(1 << 20);
+        byte[] buf = new byte[1 << 16];
+        int n;
+        while ((n = gz.read(buf)) > 0) {
+            bytes.write(buf, 0, n);
+        }
+        ByteBuffer data = ByteBuffer.wrap(bytes.toByteArray());
+        if (data.remaining() < 12 || data.getInt() != MAGIC || data.getInt() != FORMAT_VERSION
+                || data.getInt() != config()) {
+            return false;
+        }
+        Object[] tables = tables();
+        if (!checkSizes(data.duplicate(), tables)) {
+            return false;
+        }
+        for (Object table : tables) {
+            if (table == null) {
+                data.getInt();
+            } else if (table instanceof char[][]) {
+                for (char[] row : (char[][]) table) {
+                    data.getInt();
+                    data.asCharBuffer().get(row);
+                    data.position(data.position() + row.length * 2);
+                }
+            } else if (table instanceof char[]) {
+                char[] a = (char[]) table;
+                data.getInt();
+                data.asCharBuffer().get(a);
+                data.position(data.position() + a.length * 2);
+            } else if (table instanceof int[]) {
+                int[] a = (int[]) table;
+                data.getInt();
+                data.asIntBuffer().get(a);
+                data.position(data.position() + a.length * 4);
+            } else {
+                data.getInt();
+                data.get((byte[]) table);
+            }
+        }
+        return true;
+    }
+
+    private static boolean checkSizes(ByteBuffer data, Object[] tables) {
+        for (Object table : tables) {
+            if (table instanceof char[][]) {
+                for (char[] row : (char[][]) table) {
+                    if (!skip(data, row.length, 2)) {
+                        return false;
+                    }
+                }
+            } else if (!skip(data, table == null ? 0 : Array.getLength(table),
+                             table instanceof char[] ? 2 : table instanceof int[] ? 4 : 1)) {
+                return false;
+            }
+        }
+        return !data.hasRemaining();
+    }
+
+    private static boolean skip(ByteBuffer data, int length, int elementSize) {
+        if (data.remaining() < 4 || data.getInt() != length || data.remaining() < length * elementSize) {
+            return false;
+        }
+        data.position(data.position() + length * elementSize);
+        return true;
+    }
+}
@@ -0,0 +1,78 @@
+package com.cs0x7f.min2phase;
+
+import java.util.Random;
+
+/**
+ * Random cube states for tests and benchmarks.
+ * All states are uniformly distributed over the legal cube states and depend only on the Random they are drawn from,
+ * so new Random(seed) gives the same corpus on every run and every JVM.
+ */
+public class Tools {
+
+    /**
+     * Number of ints per state written by randomStates(): corner permutation (0..8!-1), twist (0..3^7-1),
+     * edge permutation (0..12!-1), flip (0..2^11-1).
+     */
+    public static final int STATE_SIZE = 4;
+
+    static final int N_CPERM = 40320;
+    static final int N_TWIST = 2187;
+    static final int N_EPERM = 479001600;
+    static final int N_FLIP = 2048;
+
+    private Tools() {
+    }
+
+    /**
+     * Generates count random states in coordinate form, STATE_SIZE ints each, starting at states[offset].
+     */
+    public static void randomStates(Random gen, int[] states, int offset, int count) {
+        for (int i = 0; i < count; i++) {
+            int cperm = gen.nextInt(N_CPERM);
+            int eperm = gen.nextInt(N_EPERM);
+            // the lowest digit of the edge permutation index swaps the last two edges, so toggling it fixes the
+            // parity without biasing the distribution
+            if (Util.getNParity(cperm, 8) != Util.getNParity(eperm, 12)) {
+                eperm ^= 1;
+            }
+            states[offset++] = cperm;
+            states[offset++] = gen.nextInt(N_TWIST);
+            states[offset++] = eperm;
+            states[offset++] = gen.nextInt(N_FLIP);
+        }
+    }
+
+    /**
+     * Converts a state written by randomStates() to a facelet string, in the format taken by Search.solution().
+     */
+    public static String toFacelets(int[] states, int offset) {
+        return Util.toFaceCube(toCubieCube(states, offset));
+    }
+
+    static CubieCube toCubieCube(int[] states, int offset) {
+        return new CubieCube(states[offset], states[offset + 1], states[offset + 2], states[offset + 3]);
+    }
+
+    /**
+     * Generates a random cube as a facelet string.
+     */
+    public static String randomCube(Random gen) {
+        int[] state = new int[STATE_SIZE];
+        randomStates(gen, state, 0, 1);
+        return toFacelets(state, 0);
+    }
+
+    /**
+     * Generates count random cubes as facelet strings, new Random(seed) is used as source.
+     */
+    public static String[] randomCubes(long seed, int count) {
+        Random gen = new Random(seed);
+        int[] states = new int[STATE_SIZE * count];
+        randomStates(gen, states, 0, count);
+        String[] cubes = new String[count];
+        for (int i = 0; i < count; i++) {
+            cubes[i] = toFacelets(states, i * STATE_SIZE);
+        }
+        return cubes;
+    }
+}
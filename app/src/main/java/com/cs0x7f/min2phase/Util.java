@@ -109,6 +109,7 @@ class Util {
     static final byte L = 4;
     static final byte B = 5;
 
+    static final byte[] centerFacelet = { U5, R5, F5, D5, L5, B5 };
     static final byte[][] cornerFacelet = {
         { U9, R1, F3 }, { U7, F1, L3 }, { U1, L1, B3 }, { U3, B1, R3 },
         { D3, F9, R7 }, { D1, L9, F7 }, { D7, B9, L7 }, { D9, R9, B7 }
@@ -129,44 +130,33 @@ class Util {
     static int[] ud2std = {Ux1, Ux2, Ux3, Rx2, Fx2, Dx1, Dx2, Dx3, Lx2, Bx2};
     static int[] std2ud = new int[18];
     static boolean[][] ckmv2 = new boolean[11][10];
+    // colors seen at a corner/edge position, c0 * 36 + c1 * 6 + c2 or c0 * 6 + c1, -> ori << 3 | corner or edge << 1 | flip, -1 if no such cubie
+    static byte[] cornerLookup = new byte[216];
+    static byte[] edgeLookup = new byte[36];
 
+    /**
+     * f holds the color (U..B) of each facelet. Color triples/pairs that do not belong to any cubie
+     * leave corner/edge 0 in their place, so CubieCube.verify() reports the missing cubie.
+     */
     static void toCubieCube(byte[] f, CubieCube ccRet) {
-        byte ori;
-        for (int i = 0; i < 8; i++)
-            ccRet.ca[i] = 0;// invalidate corners
-        for (int i = 0; i < 12; i++)
-            ccRet.ea[i] = 0;// and edges
-        byte col1, col2;
-        for (byte i = 0; i < 8; i++) {
-            // get the colors of the cubie at corner i, starting with U/D
-            for (ori = 0; ori < 3; ori++)
-                if (f[cornerFacelet[i][ori]] == U || f[cornerFacelet[i][ori]] == D)
-                    break;
-            col1 = f[cornerFacelet[i][(ori + 1) % 3]];
-            col2 = f[cornerFacelet[i][(ori + 2) % 3]];
-
-            for (byte j = 0; j < 8; j++) {
-                if (col1 == cornerFacelet[j][1] / 9 && col2 == cornerFacelet[j][2] / 9) {
-                    // in cornerposition i we have cornercubie j
-                    ccRet.ca[i] = (byte) (ori % 3 << 3 | j);
-                    break;
-                }
+        long corn = 0;// corners and edges are collected packed, missing ones stay 0
+        long edge = 0;
+        for (int i = 0; i < 8; i++) {
+            byte[] fac = cornerFacelet[i];
+            int val = cornerLookup[f[fac[0]] * 36 + f[fac[1]] * 6 + f[fac[2]]];
+            if (val >= 0) {
+                corn |= (long) val << (i << 3);
             }
         }
-        for (byte i = 0; i < 12; i++) {
-            for (byte j = 0; j < 12; j++) {
-                if (f[edgeFacelet[i][0]] == edgeFacelet[j][0] / 9
-                        && f[edgeFacelet[i][1]] == edgeFacelet[j][1] / 9) {
-                    ccRet.ea[i] = (byte) (j << 1);
-                    break;
-                }
-                if (f[edgeFacelet[i][0]] == edgeFacelet[j][1] / 9
-                        && f[edgeFacelet[i][1]] == edgeFacelet[j][0] / 9) {
-                    ccRet.ea[i] = (byte) (j << 1 | 1);
-                    break;
-                }
+        for (int i = 0; i < 12; i++) {
+            byte[] fac = edgeFacelet[i];
+            int val = edgeLookup[f[fac[0]] * 6 + f[fac[1]]];
+            if (val >= 0) {
+                edge |= (long) val << (i * 5);
             }
         }
+        ccRet.setCornPacked(corn);
+        ccRet.setEdgePacked(edge);
     }
 
     static String toFaceCube(CubieCube cc) {
@@ -303,6 +293,24 @@ class Util {
     }
 
     static {
+        java.util.Arrays.fill(cornerLookup, (byte) -1);
+        java.util.Arrays.fill(edgeLookup, (byte) -1);
+        for (int j = 0; j < 8; j++) {
+            for (int ori = 0; ori < 3; ori++) {
+                // twist ori: the U/D facelet of corner j is at (ori) of the position, the others follow clockwise
+                int[] col = new int[3];
+                for (int k = 0; k < 3; k++) {
+                    col[(ori + k) % 3] = cornerFacelet[j][k] / 9;
+                }
+                cornerLookup[col[0] * 36 + col[1] * 6 + col[2]] = (byte) (ori << 3 | j);
+            }
+        }
+        for (int j = 0; j < 12; j++) {
+            int col0 = edgeFacelet[j][0] / 9;
+            int col1 = edgeFacelet[j][1] / 9;
+            edgeLookup[col0 * 6 + col1] = (byte) (j << 1);
+            edgeLookup[col1 * 6 + col0] = (byte) (j << 1 | 1);
+        }
         for (int i = 0; i < 10; i++) {
             std2ud[ud2std[i]] = i;
         }
@@ -9,13 +9,14 @@ import org.opencv.core.Scalar;
  */
 
 public class DetectionBox {
-    private Scalar colorHsv;
+    //Written by the vision worker, read by the preview and serial threads
+    private final double[] colorHsv = new double[]{255, 0, 0};
+    private volatile String color;
     private Rect rect;
     private Point center;
     private int size;
 
     public DetectionBox(Point center, int size){
-        colorHsv = new Scalar(255);
         this.size = size;
 
         this.center = center;
@@ -25,14 +26,26 @@ public class DetectionBox {
         rect.y = (int)(center.y - size/2);
         rect.width = size;
         rect.height = size;
+
+        color = classify(colorHsv[0], colorHsv[1]);
     }
 
     public Scalar getColorHsv() {
-        return colorHsv;
+        return new Scalar(colorHsv[0], colorHsv[1], colorHsv[2]);
     }
 
     public void setColorHsv(Scalar colorHsv) {
-        this.colorHsv = colorHsv;
+        setColorHsv(colorHsv.val[0], colorHsv.val[1], colorHsv.val[2]);
+    }
+
+    /**
+     * Updates the measured color and classifies it right away, so getColor() is just a field read
+     */
+    public void setColorHsv(double hue, double sat, double val) {
+        colorHsv[0] = hue;
+        colorHsv[1] = sat;
+        colorHsv[2] = val;
+        color = classify(hue, sat);
     }
 
     public Rect getRect() {
@@ -56,14 +69,10 @@ public class DetectionBox {
     }
 
     public String getColor(){
-        Scalar tempRgba = Utils.convertScalarHsv2Rgba(this.getColorHsv());
-        double hue = this.getColorHsv().val[0];
-        double sat = this.getColorHsv().val[1];
-        double val = this.getColorHsv().val[2];
-        double red = tempRgba.val[0];
-        double blue = tempRgba.val[1];
-        double green = tempRgba.val[2];
+        return color;
+    }
 
+    private static String classify(double hue, double sat){
         String tempString = "";
         if (sat < 100){
             tempString = "W";
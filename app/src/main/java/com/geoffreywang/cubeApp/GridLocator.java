@@ -0,0 +1,262 @@
+package com.geoffreywang.cubeApp;
+
+import org.opencv.android.PipelineMetrics;
+import org.opencv.core.Core;
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+import org.opencv.core.MatArena;
+import org.opencv.core.MatOfPoint;
+import org.opencv.core.MatOfPoint2f;
+import org.opencv.core.Point;
+import org.opencv.core.RotatedRect;
+import org.opencv.core.Size;
+import org.opencv.imgproc.Imgproc;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Finds the nine sticker regions of the visible face on a downscaled copy of the frame.
+ *
+ * Stickers are picked out as square-ish contours of the edge image, a 3x3 lattice is fitted to
+ * their centers and the result is kept until the next successful locate() call.
+ * The centers are ordered like MainActivity.boxLocations, i.e. index (v + 1) * 3 + (u + 1) sits at
+ * center + u * a + v * b where a points towards box 6 and b towards box 8 of the box diagram.
+ */
+public class GridLocator {
+    private static final PipelineMetrics.Stage LOCATE_STAGE = PipelineMetrics.stage("vision.locate");
+    private static final PipelineMetrics.Counter NOT_FOUND = PipelineMetrics.counter("vision.locate_not_found");
+
+    //Width of the image the contours are searched on
+    private static final int ANALYSIS_WIDTH = 320;
+    //Contours beyond this count are not measured, which bounds the per-contour work and the candidate
+    //arrays. findContours() itself still returns every contour, a noisy frame costs that much anyway
+    private static final int MAX_CONTOURS = 200;
+    private static final int MIN_STICKERS = 5;
+    //Sticker side relative to the analysis width
+    private static final double MIN_STICKER_SIDE = 0.03, MAX_STICKER_SIDE = 0.25;
+    //Detection box side relative to the sticker spacing, about the same as the fixed layout
+    private static final double BOX_FILL = 0.3;
+
+    //Per call temporaries, kept between calls so their buffers are reused
+    private final MatArena arena = new MatArena();
+    private final Mat kernel = Mat.ones(3, 3, CvType.CV_8U);
+    private final MatOfPoint2f curve = new MatOfPoint2f();
+    private final List<MatOfPoint> contours = new ArrayList<>();
+
+    private final double[] xs = new double[MAX_CONTOURS];
+    private final double[] ys = new double[MAX_CONTOURS];
+    private final double[] sides = new double[MAX_CONTOURS];
+    private final double[] angles = new double[MAX_CONTOURS];
+    private final double[] scratch = new double[MAX_CONTOURS];
+    private final int[] us = new int[MAX_CONTOURS];
+    private final int[] vs = new int[MAX_CONTOURS];
+
+    private final Point[] centers = new Point[9];
+    private double boxSize;
+
+    public GridLocator() {
+        for (int i = 0; i < centers.length; i++) {
+            centers[i] = new Point();
+        }
+    }
+
+    /**
+     * Searches the frame for a 3x3 sticker grid
+     * @param rgba RGBA frame, at full or reduced resolution
+     * @param frameWidth Width of the full resolution frame the results are scaled to
+     * @return true if a grid was found, the previous result is kept otherwise
+     */
+    public boolean locate(Mat rgba, int frameWidth) {
+        long start = PipelineMetrics.now();
+        arena.begin();
+        Mat small = arena.obtain();
+        Mat gray = arena.obtain();
+        Mat edges = arena.obtain();
+        Mat hierarchy = arena.obtain();
+        double scale = (double) ANALYSIS_WIDTH / rgba.width();
+        Imgproc.resize(rgba, small, new Size(ANALYSIS_WIDTH, Math.round(rgba.height() * scale)), 0, 0, Imgproc.INTER_AREA);
+        Imgproc.cvtColor(small, gray, Imgproc.COLOR_RGBA2GRAY);
+        Imgproc.Canny(gray, edges, 30, 90);
+        Imgproc.dilate(edges, edges, kernel);
+
+        //The stickers are the holes between the dilated edges
+        Core.bitwise_not(edges, edges);
+        Imgproc.findContours(edges, contours, hierarchy, Imgproc.RETR_LIST, Imgproc.CHAIN_APPROX_SIMPLE);
+        for (MatOfPoint contour : contours) {
+            arena.track(contour);
+        }
+        int count = collectStickers();
+        contours.clear();
+        arena.end();
+
+        boolean found = count >= MIN_STICKERS && fitGrid(count, (double) frameWidth / ANALYSIS_WIDTH);
+        if (!found) {
+            NOT_FOUND.increment();
+        }
+        LOCATE_STAGE.recordSince(start);
+        return found;
+    }
+
+    //Keeps the square contours of a plausible sticker size, returns their count
+    private int collectStickers() {
+        int count = 0;
+        double minSide = ANALYSIS_WIDTH * MIN_STICKER_SIDE;
+        double maxSide = ANALYSIS_WIDTH * MAX_STICKER_SIDE;
+        int limit = Math.min(contours.size(), MAX_CONTOURS);
+        for (int i = 0; i < limit; i++) {
+            MatOfPoint contour = contours.get(i);
+            //Converted natively into the reused curve, the points never pass through Java
+            contour.convertTo(curve, CvType.CV_32F);
+            RotatedRect rect = Imgproc.minAreaRect(curve);
+            double w = rect.size.width;
+            double h = rect.size.height;
+            if (w < minSide || h < minSide || w > maxSide || h > maxSide) {
+                continue;
+            }
+            if (w / h < 0.75 || h / w < 0.75) {
+                continue;
+            }
+            if (Imgproc.contourArea(contour) < 0.75 * w * h) {
+                continue;
+            }
+            xs[count] = rect.center.x;
+            ys[count] = rect.center.y;
+            sides[count] = (w + h) / 2;
+            angles[count] = Math.toRadians(rect.angle);
+            count++;
+        }
+        return count;
+    }
+
+    private boolean fitGrid(int count, double toFrame) {
+        //Drop candidates whose size is off compared to the typical sticker
+        double side = median(sides, count);
+        int kept = 0;
+        for (int i = 0; i < count; i++) {
+            if (Math.abs(sides[i] - side) < 0.35 * side) {
+                xs[kept] = xs[i];
+                ys[kept] = ys[i];
+                angles[kept] = angles[i];
+                kept++;
+            }
+        }
+        count = kept;
+        if (count < MIN_STICKERS) {
+            return false;
+        }
+
+        //Grid orientation is only defined modulo 90 degrees, average it on 4 * angle
+        double sin = 0, cos = 0;
+        for (int i = 0; i < count; i++) {
+            sin += Math.sin(4 * angles[i]);
+            cos += Math.cos(4 * angles[i]);
+        }
+        double angle = Math.atan2(sin, cos) / 4;
+        //Pick the lattice direction closest to the one of the fixed layout (-45 degrees)
+        while (angle > 0) {
+            angle -= Math.PI / 2;
+        }
+        while (angle <= -Math.PI / 2) {
+            angle += Math.PI / 2;
+        }
+
+        //Spacing is the typical nearest neighbour distance
+        for (int i = 0; i < count; i++) {
+            double best = Double.MAX_VALUE;
+            for (int j = 0; j < count; j++) {
+                if (i != j) {
+                    best = Math.min(best, Math.hypot(xs[i] - xs[j], ys[i] - ys[j]));
+                }
+            }
+            scratch[i] = best;
+        }
+        double spacing = median(scratch, count);
+        double ax = spacing * Math.cos(angle), ay = spacing * Math.sin(angle);
+        double bx = -ay, by = ax;
+
+        //Lattice coordinates relative to the first candidate
+        int minU = 0, minV = 0, maxU = 0, maxV = 0;
+        for (int i = 0; i < count; i++) {
+            double dx = xs[i] - xs[0];
+            double dy = ys[i] - ys[0];
+            us[i] = (int) Math.round((dx * ax + dy * ay) / (spacing * spacing));
+            vs[i] = (int) Math.round((dx * bx + dy * by) / (spacing * spacing));
+            minU = Math.min(minU, us[i]);
+            minV = Math.min(minV, vs[i]);
+            maxU = Math.max(maxU, us[i]);
+            maxV = Math.max(maxV, vs[i]);
+        }
+
+        //Place the 3x3 window over as many candidates as possible
+        int bestU = 0, bestV = 0, bestCount = -1;
+        for (int u0 = minU; u0 <= Math.max(minU, maxU - 2); u0++) {
+            for (int v0 = minV; v0 <= Math.max(minV, maxV - 2); v0++) {
+                int covered = 0;
+                for (int i = 0; i < count; i++) {
+                    if (us[i] >= u0 && us[i] < u0 + 3 && vs[i] >= v0 && vs[i] < v0 + 3) {
+                        covered++;
+                    }
+                }
+                if (covered > bestCount) {
+                    bestCount = covered;
+                    bestU = u0;
+                    bestV = v0;
+                }
+            }
+        }
+        if (bestCount < MIN_STICKERS) {
+            return false;
+        }
+
+        //Average the grid center implied by every covered sticker
+        double cx = 0, cy = 0;
+        for (int i = 0; i < count; i++) {
+            int u = us[i] - bestU - 1;
+            int v = vs[i] - bestV - 1;
+            if (u >= -1 && u <= 1 && v >= -1 && v <= 1) {
+                cx += xs[i] - u * ax - v * bx;
+                cy += ys[i] - u * ay - v * by;
+            }
+        }
+        cx /= bestCount;
+        cy /= bestCount;
+
+        for (int v = -1; v <= 1; v++) {
+            for (int u = -1; u <= 1; u++) {
+                Point center = centers[(v + 1) * 3 + (u + 1)];
+                center.x = (cx + u * ax + v * bx) * toFrame;
+                center.y = (cy + u * ay + v * by) * toFrame;
+            }
+        }
+        boxSize = spacing * BOX_FILL * toFrame;
+        return true;
+    }
+
+    private double median(double[] values, int count) {
+        System.arraycopy(values, 0, scratch, 0, count);
+        Arrays.sort(scratch, 0, count);
+        return scratch[count / 2];
+    }
+
+    /**
+     * @return Sticker centers in frame coordinates, ordered like the fixed box layout
+     */
+    public Point[] getCenters() {
+        return centers;
+    }
+
+    /**
+     * @return Side of the detection box fitting inside a sticker, in frame pixels
+     */
+    public int getBoxSize() {
+        return (int) boxSize;
+    }
+
+    public void release() {
+        arena.release();
+        kernel.release();
+        curve.release();
+    }
+}
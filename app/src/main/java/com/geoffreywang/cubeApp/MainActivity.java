@@ -24,8 +24,10 @@ import android.widget.RelativeLayout;
 import android.widget.TextView;
 import android.os.Handler;
 
+import com.cs0x7f.min2phase.CubeRepair;
 import com.cs0x7f.min2phase.Main;
 import com.cs0x7f.min2phase.Search;
+import com.cs0x7f.min2phase.SolutionVerifier;
 import com.felhr.usbserial.UsbSerialDevice;
 import com.felhr.usbserial.UsbSerialInterface;
 import com.geoffreywang.cubeTranslator.Hand;
@@ -34,17 +36,21 @@ import com.geoffreywang.cubeTranslator.Solver;
 import org.opencv.android.BaseLoaderCallback;
 import org.opencv.android.CameraBridgeViewBase;
 import org.opencv.android.LoaderCallbackInterface;
+import org.opencv.android.Nv21Image;
 import org.opencv.android.OpenCVLoader;
-import org.opencv.core.Core;
+import org.opencv.android.PipelineMetrics;
 import org.opencv.core.Mat;
+import org.opencv.core.MatTracker;
 import org.opencv.core.Point;
-import org.opencv.core.Scalar;
-import org.opencv.imgproc.Imgproc;
 
+import java.io.File;
+import java.io.IOException;
 import java.io.UnsupportedEncodingException;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 public class MainActivity extends AppCompatActivity implements CameraBridgeViewBase.CvCameraViewListener2 {
 
@@ -62,13 +68,18 @@ public class MainActivity extends AppCompatActivity implements CameraBridgeViewB
     //For camera stuff
     private CameraBridgeViewBase mOpenCvCameraView;
     private TextView textView;
+    //Owned by the camera frame, never released here
     private Mat mRgba;
+    //Reduced RGBA frame for grid locating, only used on the vision worker
+    private Mat locateFrame;
     private final Handler handler = new Handler();
     private String[] faces;
     private int scanCount = 0;
     private int leftColor, rightColor;
 
-    private ArrayList<DetectionBox> boxes;
+    private volatile ArrayList<DetectionBox> boxes;
+    private volatile VisionWorker visionWorker;
+    private int frameWidth, frameHeight;
     /**
      * Box Location Diagram:
      *
@@ -86,6 +97,29 @@ public class MainActivity extends AppCompatActivity implements CameraBridgeViewB
     private int boxLayoutDistance = 600;
     private int boxSize = 110;
 
+    //Falls back to locating the stickers when too few boxes land on a recognizable color
+    private static final int MIN_CLASSIFIED_BOXES = 7;
+    private static final int LOW_CONFIDENCE_FRAME_LIMIT = 15;
+    private static final int LOCATE_DOWNSCALE = 4;
+    private GridLocator gridLocator = new GridLocator();
+    private OverlayRenderer overlayRenderer = new OverlayRenderer();
+    private int lowConfidenceFrames = 0;
+
+    //Pipeline timings, dumped to the log every few seconds in debug builds
+    private static final PipelineMetrics.Stage SEARCH_STAGE = PipelineMetrics.stage("solve.search");
+    private static final PipelineMetrics.Stage TRANSLATE_STAGE = PipelineMetrics.stage("solve.translate");
+    private static final PipelineMetrics.Stage SERIAL_STAGE = PipelineMetrics.stage("serial.write");
+    private static final PipelineMetrics.Counter SOLVE_ERRORS = PipelineMetrics.counter("solve.errors");
+    private static final long METRICS_REPORT_MILLIS = 10000;
+    private PipelineMetrics.Reporter metricsReporter;
+    private static final String SOLUTION_CACHE_FILE = "solutions.bin";
+    private File solutionCacheFile;
+    //Loads and saves of the solution cache run one after the other, also across activity instances
+    private static final ExecutorService SOLUTION_CACHE_EXECUTOR = Executors.newSingleThreadExecutor();
+    private final int[] solutionMoves = new int[32];
+    private final double[] sampleYuv = new double[3];
+    private final double[] sampleHsv = new double[3];
+
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         isSerialStarted = false;
@@ -106,14 +140,25 @@ public class MainActivity extends AppCompatActivity implements CameraBridgeViewB
         mOpenCvCameraView.setVisibility(SurfaceView.VISIBLE);
         mOpenCvCameraView.setCvCameraViewListener(this);
 
-        //Start search
-        new Thread(new Runnable() {
+        //Build the search tables in the background, solves work from the first stage on
+        Search.initAsync(new Search.InitListener() {
+            public void onInitStage(int stage) {
+                Log.i("CubeSolver", stage == Search.INIT_COMPLETE ? "Solver tables complete" : "Solver ready");
+            }
+        });
+
+        //Restore the solutions of earlier runs
+        solutionCacheFile = new File(getFilesDir(), SOLUTION_CACHE_FILE);
+        SOLUTION_CACHE_EXECUTOR.execute(new Runnable() {
             public void run() {
-                if (!Search.isInited()) {
-                    Search.init();
+                try {
+                    int count = Main.getSolutionCache().load(solutionCacheFile);
+                    Log.i("CubeSolver", "Loaded " + count + " cached solutions");
+                } catch (IOException e) {
+                    Log.e("CubeSolver", "Could not load the solution cache", e);
                 }
             }
-        }).start();
+        });
 
 
         //USED TO ROTATE SOMETHING 90º
@@ -262,6 +307,18 @@ public class MainActivity extends AppCompatActivity implements CameraBridgeViewB
         if (mOpenCvCameraView != null){
             mOpenCvCameraView.disableView();
         }
+        if (Search.isInited()) {
+            //Queued behind the load of onCreate, so the file is never written while it is read
+            SOLUTION_CACHE_EXECUTOR.execute(new Runnable() {
+                public void run() {
+                    try {
+                        Main.getSolutionCache().save(solutionCacheFile);
+                    } catch (IOException e) {
+                        Log.e("CubeSolver", "Could not save the solution cache", e);
+                    }
+                }
+            });
+        }
     }
 
     @Override
@@ -284,54 +341,118 @@ public class MainActivity extends AppCompatActivity implements CameraBridgeViewB
 
     @Override
     public void onCameraViewStarted(int i, int i1) {
-        mRgba = new Mat();
+        frameWidth = i;
+        frameHeight = i1;
+
+        Point tempCenter = new Point(frameWidth/2,frameHeight/2);
+        Point[] centers = new Point[boxLocations.length];
+        for (int j = 0; j < boxLocations.length; j++) {
+            centers[j] = new Point(boxLocations[j].x*boxLayoutDistance+tempCenter.x,boxLocations[j].y*boxLayoutDistance+tempCenter.y);
+        }
+        layoutBoxes(centers, boxSize);
 
+        locateFrame = new Mat();
+        visionWorker = new VisionWorker(new VisionWorker.FrameProcessor() {
+            @Override
+            public void processFrame(Nv21Image frame) {
+                ArrayList<DetectionBox> boxes = MainActivity.this.boxes;
+                processColor(frame, boxes);
+                if (isLayoutCheckDue(boxes)) {
+                    frame.rgbaReduced(LOCATE_DOWNSCALE, locateFrame);
+                    if (gridLocator.locate(locateFrame, frameWidth)) {
+                        layoutBoxes(gridLocator.getCenters(), gridLocator.getBoxSize());
+                    }
+                }
+            }
+        });
+        visionWorker.start();
+
+        if (BuildConfig.DEBUG) {
+            //Native heap growth shows up as a rising live Mat count in the metrics log
+            MatTracker.setEnabled(true);
+            metricsReporter = new PipelineMetrics.Reporter(new PipelineMetrics.Reporter.Sink() {
+                @Override
+                public void report(String dump) {
+                    Log.i("Metrics", dump + "mats.live=" + MatTracker.getLiveCount() + " (" + MatTracker.getLiveBytes() / 1024 + " KiB)");
+                }
+            }, METRICS_REPORT_MILLIS);
+            metricsReporter.start();
+        }
     }
 
     @Override
     public void onCameraViewStopped() {
-        mRgba.release();
+        visionWorker.stop();
+        if (metricsReporter != null) {
+            metricsReporter.stop();
+            metricsReporter = null;
+        }
+        mRgba = null;
+        gridLocator.release();
+        locateFrame.release();
     }
 
     @Override
     public Mat onCameraFrame(CameraBridgeViewBase.CvCameraViewFrame cvCameraViewFrame) {
-        mRgba = cvCameraViewFrame.rgba();
-        if(boxes == null){
-            Point tempCenter = new Point(mRgba.width()/2,mRgba.height()/2);
-            boxes = new ArrayList<>();
-            for(Point boxLocation: boxLocations){
-                boxes.add(new DetectionBox(new Point(boxLocation.x*boxLayoutDistance+tempCenter.x,boxLocation.y*boxLayoutDistance+tempCenter.y),boxSize));
-            }
+        //Frames may arrive before onCameraViewStarted() has run
+        VisionWorker worker = visionWorker;
+        ArrayList<DetectionBox> boxes = this.boxes;
+        if (worker == null || boxes == null) {
+            return cvCameraViewFrame.rgba();
+        }
+        //Box colors and the grid are analyzed on the vision worker from a copy of the camera data
+        worker.offer(cvCameraViewFrame);
+        //The full RGBA conversion is only needed for the preview
+        if (!mOpenCvCameraView.isFrameDrawn()) {
+            return null;
         }
-        processColor();
+        mRgba = cvCameraViewFrame.rgba();
         drawOnFrame();
         return mRgba;
     }
 
-    private void processColor(){
+    //True after a run of frames with too many unrecognizable colors
+    private boolean isLayoutCheckDue(ArrayList<DetectionBox> boxes){
+        int classified = 0;
         for(DetectionBox box : boxes) {
-            Mat regionRgba = mRgba.submat(box.getRect());
-            Mat regionHsv = new Mat();
-            Imgproc.cvtColor(regionRgba, regionHsv, Imgproc.COLOR_RGB2HSV_FULL);
-            Scalar tempHsv = Core.sumElems(regionHsv);
-            int pointCount = box.getRect().width * box.getRect().height;
-            for (int i = 0; i < tempHsv.val.length; i++) {
-                tempHsv.val[i] /= pointCount;
+            if (!box.getColor().isEmpty()) {
+                classified++;
             }
-            box.setColorHsv(tempHsv);
         }
+        if (classified >= MIN_CLASSIFIED_BOXES) {
+            lowConfidenceFrames = 0;
+        } else if (++lowConfidenceFrames >= LOW_CONFIDENCE_FRAME_LIMIT) {
+            lowConfidenceFrames = 0;
+            return true;
+        }
+        return false;
     }
 
-    private void drawOnFrame(){
-        for (int i = 0; i < boxes.size(); i++) {
-            DetectionBox box = boxes.get(i);
+    private void layoutBoxes(Point[] centers, int size){
+        //Keep every box inside the frame, submat() throws otherwise
+        int half = size/2 + 1;
+        ArrayList<DetectionBox> newBoxes = new ArrayList<>();
+        for (Point center : centers) {
+            double x = Math.min(Math.max(center.x, half), frameWidth - half);
+            double y = Math.min(Math.max(center.y, half), frameHeight - half);
+            newBoxes.add(new DetectionBox(new Point(x, y), size));
+        }
+        //Swapped in whole since the preview and serial threads read it concurrently
+        this.boxes = newBoxes;
+    }
 
-            Point textDrawPoint = new Point(box.getCenter().x-box.getSize(),box.getCenter().y+box.getSize());
-            Imgproc.rectangle(mRgba, box.getTopLeftPoint(), box.getBottomRightPoint(), new Scalar(255,0,0,255), 4);
-            Imgproc.putText(mRgba,(i+1)+":"+box.getColor(),textDrawPoint,1,6,new Scalar(0,0,255,255),10);
+    private void processColor(Nv21Image frame, ArrayList<DetectionBox> boxes){
+        for(DetectionBox box : boxes) {
+            frame.meanYuv(box.getRect(), sampleYuv);
+            Utils.convertYuv2Hsv(sampleYuv, sampleHsv);
+            box.setColorHsv(sampleHsv[0], sampleHsv[1], sampleHsv[2]);
         }
     }
 
+    private void drawOnFrame(){
+        overlayRenderer.draw(mRgba, boxes);
+    }
+
     private void autoRefresh() {
         handler.postDelayed(new Runnable() {
             @Override
@@ -346,6 +467,7 @@ public class MainActivity extends AppCompatActivity implements CameraBridgeViewB
     }
 
     private void printFace() {
+        ArrayList<DetectionBox> boxes = this.boxes;
         String tempString = "";
         for (int i = 0; i < boxes.size(); i++) {
             DetectionBox box = boxes.get(i);
@@ -358,6 +480,7 @@ public class MainActivity extends AppCompatActivity implements CameraBridgeViewB
     }
 
     private int saveFace(){
+        ArrayList<DetectionBox> boxes = this.boxes;
         String tempString = "";
         for (int i = 0; i < boxes.size(); i++) {
             DetectionBox box = boxes.get(i);
@@ -409,25 +532,33 @@ public class MainActivity extends AppCompatActivity implements CameraBridgeViewB
         }
     }
 
+    //Times how long the serial library takes to accept a command
+    private void writeSerial(String command) {
+        long start = PipelineMetrics.now();
+        serialPort.write(command.getBytes());
+        SERIAL_STAGE.recordSince(start);
+    }
+
     public void onClickOpen(View view) {
         if(isSerialStarted) {
             String textInput = "04|";
-            serialPort.write(textInput.getBytes());
+            writeSerial(textInput);
         }
     }
 
     public void onClickClose(View view) {
         if(isSerialStarted) {
             String textInput = "15|";
-            serialPort.write(textInput.getBytes());
+            writeSerial(textInput);
         }
     }
 
     public void onClickScan(View view) {
         if(isSerialStarted) {
             scanCount = 0;
+            mOpenCvCameraView.setPreviewEnabled(true);
             String textInput = "0|6|8|7|7|8|1|4|62|8|3|3|8|5|0|62|8|7|7|8|1|";
-            serialPort.write(textInput.getBytes());
+            writeSerial(textInput);
         }
     }
 
@@ -438,13 +569,39 @@ public class MainActivity extends AppCompatActivity implements CameraBridgeViewB
         }
         Log.i("CubeFace", tempString);
         if(isSerialStarted && tempString.length() == 54) {
-            String solution = Main.solveCube(tempString);
-            if(solution.contains("Error")){
-                textView.setText(solution);
+            long start = PipelineMetrics.now();
+            String cube = tempString;
+            int length = Main.solveCube(cube, solutionMoves);
+            if(length < 0 && length >= -6){
+                //A single misread sticker can be fixed without scanning again
+                String repaired = Main.repairCube(tempString);
+                if(repaired != null){
+                    int facelet = CubeRepair.changes(tempString, repaired)[0];
+                    Log.i("CubeSolver", "Repaired " + CubeRepair.faceletName(facelet) + ": " + tempString.charAt(facelet) + " -> " + repaired.charAt(facelet));
+                    cube = repaired;
+                    length = Main.solveCube(cube, solutionMoves);
+                }
+            }
+            start = SEARCH_STAGE.recordSince(start);
+            if(length < 0){
+                SOLVE_ERRORS.increment();
+                textView.setText(Main.errorMessage(length));
             }else{
-                Solver solver = new Solver(leftColor, rightColor, solution);
+                Log.i("CubeSolver", Search.toString(solutionMoves, length));
+                Solver solver = new Solver(leftColor, rightColor, solutionMoves, length);
                 String moveCode = solver.generateSolution();
-                serialPort.write(moveCode.getBytes());
+                TRANSLATE_STAGE.recordSince(start);
+                //Never send the robot a sequence that does not end at the solved cube
+                if(!SolutionVerifier.verify(cube, solutionMoves, length)
+                        || !SolutionVerifier.verify(cube, Solver.simulateMoveCode(leftColor, rightColor, moveCode))){
+                    Log.e("CubeSolver", "Solution check failed for " + cube + ": " + moveCode);
+                    SOLVE_ERRORS.increment();
+                    textView.setText("Solution check failed");
+                    return;
+                }
+                //Nobody watches the preview while the robot turns the cube, leave the CPU to the robot link
+                mOpenCvCameraView.setPreviewEnabled(false);
+                writeSerial(moveCode);
             }
         }
     }
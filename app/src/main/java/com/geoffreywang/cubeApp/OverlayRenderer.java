@@ -0,0 +1,66 @@
+package com.geoffreywang.cubeApp;
+
+import org.opencv.core.Core;
+import org.opencv.core.Mat;
+import org.opencv.core.Point;
+import org.opencv.core.Scalar;
+import org.opencv.imgproc.Imgproc;
+
+import java.util.ArrayList;
+
+/**
+ * Draws the detection boxes and their labels on the preview frame without allocating per frame.
+ *
+ * Box geometry is cached until the box layout changes and a label string is only rebuilt when
+ * the classification of its box changes.
+ */
+public class OverlayRenderer {
+    private static final Scalar BOX_COLOR = new Scalar(255, 0, 0, 255);
+    private static final Scalar TEXT_COLOR = new Scalar(0, 0, 255, 255);
+    private static final int BOX_THICKNESS = 4;
+    private static final int FONT_FACE = Core.FONT_HERSHEY_PLAIN;
+    private static final double FONT_SCALE = 6;
+    private static final int TEXT_THICKNESS = 10;
+
+    private ArrayList<DetectionBox> layout;
+    private Point[] topLefts = new Point[0];
+    private Point[] bottomRights = new Point[0];
+    private Point[] textPoints = new Point[0];
+    private String[] colors = new String[0];
+    private String[] labels = new String[0];
+
+    public void draw(Mat rgba, ArrayList<DetectionBox> boxes) {
+        if (boxes != layout) {
+            cacheLayout(boxes);
+        }
+        for (int i = 0; i < boxes.size(); i++) {
+            String color = boxes.get(i).getColor();
+            if (!color.equals(colors[i])) {
+                colors[i] = color;
+                labels[i] = (i + 1) + ":" + color;
+            }
+            Imgproc.rectangle(rgba, topLefts[i], bottomRights[i], BOX_COLOR, BOX_THICKNESS);
+            Imgproc.putText(rgba, labels[i], textPoints[i], FONT_FACE, FONT_SCALE, TEXT_COLOR, TEXT_THICKNESS);
+        }
+    }
+
+    //Boxes never move, a new layout always comes as a new list
+    private void cacheLayout(ArrayList<DetectionBox> boxes) {
+        int count = boxes.size();
+        if (topLefts.length != count) {
+            topLefts = new Point[count];
+            bottomRights = new Point[count];
+            textPoints = new Point[count];
+            colors = new String[count];
+            labels = new String[count];
+        }
+        for (int i = 0; i < count; i++) {
+            DetectionBox box = boxes.get(i);
+            topLefts[i] = box.getTopLeftPoint();
+            bottomRights[i] = box.getBottomRightPoint();
+            textPoints[i] = new Point(box.getCenter().x - box.getSize(), box.getCenter().y + box.getSize());
+            colors[i] = null;
+        }
+        layout = boxes;
+    }
+}
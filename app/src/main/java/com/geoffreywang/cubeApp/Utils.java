@@ -1,19 +1,46 @@
 package com.geoffreywang.cubeApp;
 
-import org.opencv.core.CvType;
-import org.opencv.core.Mat;
-import org.opencv.core.Scalar;
-import org.opencv.imgproc.Imgproc;
-
 /**
  * Created by geoffreywang on 5/3/17.
  */
 
 public class Utils {
-    public static Scalar convertScalarHsv2Rgba(Scalar hsvColor){
-        Mat pointMatRgba = new Mat();
-        Mat pointMatHsv = new Mat(1,1, CvType.CV_8UC3,hsvColor);
-        Imgproc.cvtColor(pointMatHsv,pointMatRgba,Imgproc.COLOR_HSV2RGB_FULL,4);
-        return  new Scalar(pointMatRgba.get(0,0));
+    /**
+     * Converts a camera YUV (BT.601, as in NV21 frames) color to the HSV_FULL ranges used by DetectionBox
+     * @param yuv Y, U and V (0..255)
+     * @param hsv Receives hue, saturation and value (0..255)
+     */
+    public static void convertYuv2Hsv(double[] yuv, double[] hsv){
+        double y = 1.164 * (yuv[0] - 16);
+        double u = yuv[1] - 128;
+        double v = yuv[2] - 128;
+        double red = clamp(y + 1.596 * v);
+        double green = clamp(y - 0.391 * u - 0.813 * v);
+        double blue = clamp(y + 2.018 * u);
+
+        double max = Math.max(red, Math.max(green, blue));
+        double diff = max - Math.min(red, Math.min(green, blue));
+        double hue = 0;
+        if (diff > 0) {
+            if (max == red) {
+                hue = (green - blue) / diff;
+            } else if (max == green) {
+                hue = 2 + (blue - red) / diff;
+            } else {
+                hue = 4 + (red - green) / diff;
+            }
+            //Full hue range maps the 360 degrees onto 0..255
+            hue *= 256.0 / 6;
+            if (hue < 0) {
+                hue += 256;
+            }
+        }
+        hsv[0] = hue;
+        hsv[1] = max > 0 ? 255 * diff / max : 0;
+        hsv[2] = max;
+    }
+
+    private static double clamp(double value){
+        return value < 0 ? 0 : value > 255 ? 255 : value;
     }
 }
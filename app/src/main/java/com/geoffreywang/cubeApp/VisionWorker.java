@@ -0,0 +1,124 @@
+package com.geoffreywang.cubeApp;
+
+import android.util.Log;
+
+import org.opencv.android.CameraBridgeViewBase;
+import org.opencv.android.Nv21Image;
+import org.opencv.android.PipelineMetrics;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Runs frame analysis on its own thread so the camera preview isn't held up by it.
+ *
+ * Frames are handed over through a single slot: offering a frame replaces whatever the worker
+ * hasn't picked up yet, so the worker always analyzes the newest frame and stale ones are dropped.
+ * The camera thread only copies the NV21 data into a recycled buffer, three of them are enough for
+ * it never to wait: one being filled, one in the slot and one being analyzed.
+ */
+public class VisionWorker implements Runnable {
+    private static final String TAG = "VisionWorker";
+    private static final int BUFFER_COUNT = 3;
+    private static final PipelineMetrics.Stage PROCESS_STAGE = PipelineMetrics.stage("vision.process");
+    private static final PipelineMetrics.Counter DROPPED = PipelineMetrics.counter("vision.dropped");
+
+    public interface FrameProcessor {
+        /**
+         * Called on the worker thread with the most recent frame
+         * @param frame Copy of the camera data, only valid until the method returns
+         */
+        void processFrame(Nv21Image frame);
+    }
+
+    private final FrameProcessor processor;
+    private final AtomicReference<Nv21Image> latest = new AtomicReference<>();
+    private final ConcurrentLinkedQueue<Nv21Image> free = new ConcurrentLinkedQueue<>();
+    private final AtomicLong offeredFrames = new AtomicLong();
+    private final AtomicLong droppedFrames = new AtomicLong();
+    private final AtomicLong processedFrames = new AtomicLong();
+
+    private volatile boolean running;
+    private volatile Thread thread;
+
+    public VisionWorker(FrameProcessor processor) {
+        this.processor = processor;
+    }
+
+    public void start() {
+        for (int i = 0; i < BUFFER_COUNT; i++) {
+            free.offer(new Nv21Image());
+        }
+        running = true;
+        thread = new Thread(this, TAG);
+        thread.start();
+    }
+
+    public void stop() {
+        running = false;
+        if (thread == null) {
+            return;
+        }
+        LockSupport.unpark(thread);
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        thread = null;
+
+        latest.set(null);
+        free.clear();
+        Log.i(TAG, "Processed " + processedFrames.get() + " of " + offeredFrames.get() + " frames, dropped " + droppedFrames.get());
+    }
+
+    /**
+     * Hands a frame to the worker, called from the camera thread. Never blocks.
+     * @param frame Frame to analyze, its camera data is copied so the frame may go back to the camera
+     */
+    public void offer(CameraBridgeViewBase.CvCameraViewFrame frame) {
+        Nv21Image buffer = free.poll();
+        if (buffer == null) {
+            //Not started or already stopped
+            return;
+        }
+        offeredFrames.incrementAndGet();
+        frame.copyYuv(buffer);
+        Nv21Image stale = latest.getAndSet(buffer);
+        if (stale != null) {
+            droppedFrames.incrementAndGet();
+            DROPPED.increment();
+            free.offer(stale);
+        }
+        LockSupport.unpark(thread);
+    }
+
+    @Override
+    public void run() {
+        while (running) {
+            Nv21Image frame = latest.getAndSet(null);
+            if (frame == null) {
+                LockSupport.park(this);
+                continue;
+            }
+            try {
+                long start = PipelineMetrics.now();
+                processor.processFrame(frame);
+                PROCESS_STAGE.recordSince(start);
+                processedFrames.incrementAndGet();
+            } finally {
+                free.offer(frame);
+            }
+        }
+    }
+
+    public long getDroppedFrames() {
+        return droppedFrames.get();
+    }
+
+    public long getProcessedFrames() {
+        return processedFrames.get();
+    }
+}
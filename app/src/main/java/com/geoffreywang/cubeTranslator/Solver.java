@@ -8,16 +8,150 @@ public class Solver {
     public static final int CLOCKWISE = 0, COUNTER = 1, DOUBLE = 2;
     private static final int RIGHT_MOVE_CODE_OFFSET = 0, LEFT_MOVE_CODE_OFFSET = 4;
 
+    //Colors of the faces in the order of the solver's moves (U, R, F, D, L, B) and directions of its powers
+    private static final int[] FACE_COLORS = {Hand.WHITE, Hand.ORANGE, Hand.BLUE, Hand.YELLOW, Hand.RED, Hand.GREEN};
+    private static final int[] POWER_DIRECTIONS = {CLOCKWISE, DOUBLE, COUNTER};
+
     //Instance Fields
     private Hand left, right;
-    private String solution;
+    private int[] moveColors, moveDirections;
     private String moveCode;
 
     //Constructor
     public Solver(int leftColor, int rightColor, String solution) {
+        int[] moves = parseSolution(solution);
+        init(leftColor, rightColor, moves, moves.length);
+    }
+
+    /**
+     * Creates a solver for moves as returned by Search.solution(String, int, long, long, int[])
+     * @param moves Face * 3 + power, faces in the order U R F D L B, powers clockwise, double, counter
+     * @param length Number of moves
+     */
+    public Solver(int leftColor, int rightColor, int[] moves, int length) {
+        init(leftColor, rightColor, moves, length);
+    }
+
+    private void init(int leftColor, int rightColor, int[] moves, int length) {
         left = new Hand(leftColor, LEFT_MOVE_CODE_OFFSET);
         right = new Hand(rightColor, RIGHT_MOVE_CODE_OFFSET);
-        this.solution = convertSolution(solution);
+        moveColors = new int[length];
+        moveDirections = new int[length];
+        for (int i = 0; i < length; i++) {
+            moveColors[i] = FACE_COLORS[moves[i] / 3];
+            moveDirections[i] = POWER_DIRECTIONS[moves[i] % 3];
+        }
+    }
+
+    /**
+     * Turns a solution like "R2 U' F" into moves as taken by Solver(int, int, int[], int)
+     * @param solution Solution in face letters
+     * @return moves
+     * @throws IllegalArgumentException if a token is not a face letter with an optional 2 or '
+     */
+    public static int[] parseSolution(String solution){
+        String trimmed = solution.trim();
+        if(trimmed.isEmpty()){
+            return new int[0];
+        }
+        String[] tokens = trimmed.split("\\s+");
+        int[] moves = new int[tokens.length];
+        for (int i = 0; i < tokens.length; i++) {
+            int face = "URFDLB".indexOf(tokens[i].charAt(0));
+            int power = tokens[i].length() == 1 ? 0 : "2'".indexOf(tokens[i].charAt(1)) + 1;
+            if(face < 0 || tokens[i].length() > 2 || tokens[i].length() == 2 && power == 0){
+                throw new IllegalArgumentException("Not a move: " + tokens[i]);
+            }
+            moves[i] = face * 3 + power;
+        }
+        return moves;
+    }
+
+    //Unit vectors of the faces U, R, F, D, L, B with x to the right, y up and z to the front
+    private static final int[][] FACE_AXES = {{0, 1, 0}, {1, 0, 0}, {0, 0, 1}, {0, -1, 0}, {-1, 0, 0}, {0, 0, -1}};
+
+    /**
+     * Replays move code on a model of the robot, independent of the Hand bookkeeping used to generate it. A hand
+     * turning while the other one holds the cube turns the face it holds, while the other one is open it rotates
+     * the whole cube, while it is open itself it only turns the gripper.
+     * @param leftColor Color in the left hand at the start
+     * @param rightColor Color in the right hand at the start
+     * @param moveCode Move code as returned by generateSolution()
+     * @return Face turns as taken by Solver(int, int, int[], int), quarter turns only, or null if the code drops the
+     * cube or contains anything else
+     */
+    public static int[] simulateMoveCode(int leftColor, int rightColor, String moveCode){
+        //face[p]: face of the solver now at the place where face p started, hands stay at their start places
+        int[] face = {0, 1, 2, 3, 4, 5};
+        int[] handPlace = {faceOfColor(rightColor), faceOfColor(leftColor)};
+        boolean[] closed = {true, true};
+        int[] moves = new int[moveCode.length()];
+        int count = 0;
+        for (int i = 0; i < moveCode.length(); i++) {
+            char c = moveCode.charAt(i);
+            if(c == '|'){
+                continue;
+            }
+            int code = c - '0';
+            if(code < 0 || code > 7){
+                return null;
+            }
+            int hand = code < LEFT_MOVE_CODE_OFFSET ? 0 : 1;
+            int action = code - (hand == 0 ? RIGHT_MOVE_CODE_OFFSET : LEFT_MOVE_CODE_OFFSET);
+            if(action == Hand.MC_OPEN){
+                if(!closed[1 - hand]){
+                    return null;
+                }
+                closed[hand] = false;
+            }else if(action == Hand.MC_CLOSE){
+                closed[hand] = true;
+            }else if(closed[hand]){
+                boolean clockwise = action == Hand.MC_CLOCKWISE;
+                if(closed[1 - hand]){
+                    moves[count++] = face[handPlace[hand]] * 3 + (clockwise ? 0 : 2);
+                }else{
+                    face = rotateCube(face, handPlace[hand], clockwise);
+                }
+            }
+        }
+        return Arrays.copyOf(moves, count);
+    }
+
+    private static int faceOfColor(int color){
+        for (int i = 0; i < FACE_COLORS.length; i++) {
+            if(FACE_COLORS[i] == color){
+                return i;
+            }
+        }
+        throw new IllegalArgumentException("color " + color);
+    }
+
+    //Turns the whole cube a quarter turn about the place of axisPlace, clockwise as seen from outside that face
+    private static int[] rotateCube(int[] face, int axisPlace, boolean clockwise){
+        int[] n = FACE_AXES[axisPlace];
+        int[] rotated = new int[6];
+        for (int p = 0; p < 6; p++) {
+            int[] v = FACE_AXES[p];
+            //Clockwise seen from outside is -90 degrees about n: v -> v x n, counterclockwise v -> n x v
+            int[] cross = {v[1] * n[2] - v[2] * n[1], v[2] * n[0] - v[0] * n[2], v[0] * n[1] - v[1] * n[0]};
+            int[] w = cross;
+            if(v[0] * n[0] + v[1] * n[1] + v[2] * n[2] != 0){
+                w = v; //On the axis
+            }else if(!clockwise){
+                w = new int[] {-cross[0], -cross[1], -cross[2]};
+            }
+            rotated[placeOf(w)] = face[p];
+        }
+        return rotated;
+    }
+
+    private static int placeOf(int[] v){
+        for (int p = 0; p < 6; p++) {
+            if(Arrays.equals(FACE_AXES[p], v)){
+                return p;
+            }
+        }
+        throw new AssertionError();
     }
 
     /**
@@ -182,15 +316,11 @@ public class Solver {
     public String generateSolution(){
         //Checks if moveCode isn't already generated
         if(moveCode == null){
-            moveCode = "";
-
-            //Splits the algorithm to moves
-            String[] moves = solution.split("\\s+");
+            StringBuilder codeBuilder = new StringBuilder();
 
             //Runs through algorithm and generates moveCode
-            for (int i = 0; i < moves.length; i++) {
-                //Extracts targetColor from the move
-                int targetColor = Integer.valueOf(moves[i].substring(0,1));
+            for (int i = 0; i < moveColors.length; i++) {
+                int targetColor = moveColors[i];
                 //Adds moveCode based on required movement
                 //   Order of operation:
                 //       - Turn to face
@@ -198,7 +328,7 @@ public class Solver {
                 //       - Turn face
 
                 //Turn to face
-                moveCode += turnToColor(targetColor);
+                codeBuilder.append(turnToColor(targetColor));
 
                 //Choose correct hand
                 Hand colorHand;
@@ -212,21 +342,19 @@ public class Solver {
                 }
 
                 //Correct otherHand if needed
-                moveCode += fixInverted(checkLeft);
+                codeBuilder.append(fixInverted(checkLeft));
 
                 //Turn face
-                if(moves[i].length() > 1){
-                    String direction = moves[i].substring(1);
-                    if(direction.equals("'")){
-                        moveCode += colorHand.turnCounter();
-                    }else{
-                        moveCode += colorHand.turnDouble();
-                    }
+                if(moveDirections[i] == COUNTER){
+                    codeBuilder.append(colorHand.turnCounter());
+                }else if(moveDirections[i] == DOUBLE){
+                    codeBuilder.append(colorHand.turnDouble());
                 }else{
-                    moveCode += colorHand.turnClockwise();
+                    codeBuilder.append(colorHand.turnClockwise());
                 }
-                moveCode += "|";
+                codeBuilder.append("|");
             }
+            moveCode = codeBuilder.toString();
         }
         return moveCode;
     }
@@ -258,44 +386,6 @@ public class Solver {
         return returnString;
     }
 
-    /**
-     * Changes the letters used in the solution algorithm for numbers regarding faces
-     * @param solution
-     * @return solution in number form
-     */
-    public static String convertSolution(String solution){
-        //Split the solution into individual moves
-        String[] moves = solution.split("\\s+");
-
-        //Creates a new string that uses numbers instead
-        String returnString = "";
-        for (int i = 0; i < moves.length; i++) {
-            //Replaces the face with numbers
-            if(moves[i].substring(0,1).equals("F")){
-                returnString += Hand.BLUE;
-            }else if(moves[i].substring(0,1).equals("R")){
-                returnString += Hand.ORANGE;
-            }else if(moves[i].substring(0,1).equals("L")){
-                returnString += Hand.RED;
-            }else if(moves[i].substring(0,1).equals("U")){
-                returnString += Hand.WHITE;
-            }else if(moves[i].substring(0,1).equals("D")){
-                returnString += Hand.YELLOW;
-            }else{
-                returnString += Hand.GREEN;
-            }
-
-            //Appends the ' and 2 data
-            if(moves[i].length() > 1){
-                returnString += moves[i].substring(1);
-            }
-
-            //Separates the string with spaces
-            returnString += " ";
-        }
-        return returnString;
-    }
-
     public static int convertColorFromText(String color){
         if(color.equals("W")){
             return Hand.WHITE;
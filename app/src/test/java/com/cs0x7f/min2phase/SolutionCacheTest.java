@@ -0,0 +1,33 @@
+package com.cs0x7f.min2phase;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class SolutionCacheTest {
+
+    @BeforeClass
+    public static void init() {
+        Search.init();
+    }
+
+    @Test
+    public void putAfterMissKeepsSolvedCube() {
+        String[] cubes = Tools.randomCubes(7, 2);
+        Search search = new Search();
+        SolutionCache cache = new SolutionCache(16);
+        int[] moves = new int[31];
+
+        assertTrue(search.solution(cubes[0], 21, Long.MAX_VALUE, 0, moves) > 0);
+        // a miss parses cubes[1] into the search, put() must still store the solution of cubes[0]
+        assertEquals(-1, cache.get(search, cubes[1], 21, moves));
+        cache.put(search);
+
+        assertEquals(-1, cache.get(search, cubes[1], 21, moves));
+        int length = cache.get(search, cubes[0], 21, moves);
+        assertTrue(length > 0);
+        assertTrue(SolutionVerifier.verify(cubes[0], moves, length));
+    }
+}
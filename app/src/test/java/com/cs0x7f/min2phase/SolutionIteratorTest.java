@@ -0,0 +1,85 @@
+package com.cs0x7f.min2phase;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Iterates the solutions of near-solved cubes: there the phase-1 part is short or empty, pre-moves merge with the
+ * last move and phase-2 tails reach the solved state early, which random states hardly ever do.
+ */
+public class SolutionIteratorTest {
+
+    @BeforeClass
+    public static void init() {
+        Search.init();
+    }
+
+    @Test
+    public void fiveMoveCube() {
+        checkSolutions("LDLUUUURULLDLRDLLDBFBBFBBFBDLDDDDRURURRULRURRFBFFBFFBF", 5, 8);
+    }
+
+    @Test
+    public void scrambles() {
+        Random gen = new Random(42);
+        for (int length = 1; length <= 5; length++) {
+            for (int i = 0; i < 8; i++) {
+                checkSolutions(scramble(gen, length), length, length + 3);
+            }
+        }
+    }
+
+    @Test
+    public void solvedCube() {
+        SolutionIterator iter = new Search().solutions(Util.toFaceCube(new CubieCube()), 2, 0, 0);
+        assertTrue(iter.hasNext());
+        assertEquals(0, iter.next().length);
+        // two moves of a solved cube never come back to it without a shorter solution
+        assertFalse(iter.hasNext());
+    }
+
+    // solutions of increasing length, the first one at most maxFirst moves, each solving the cube, reduced and returned once
+    private static void checkSolutions(String facelets, int maxFirst, int maxDepth) {
+        SolutionIterator iter = new Search().solutions(facelets, maxDepth, 0, 0);
+        assertEquals(facelets, 0, iter.getError());
+        Set<String> seen = new HashSet<String>();
+        int last = -1;
+        while (iter.hasNext()) {
+            int[] moves = iter.next();
+            String solution = Search.toString(moves, moves.length);
+            assertTrue(facelets + " " + solution, SolutionVerifier.verify(facelets, moves));
+            assertTrue(facelets + " " + solution, moves.length >= last && moves.length <= maxDepth);
+            assertEquals(facelets + " " + solution, moves.length, Search.reduce(moves.clone(), moves.length));
+            assertTrue(facelets + " " + solution, seen.add(solution));
+            assertTrue(facelets + " " + solution, last >= 0 || moves.length <= maxFirst);
+            last = moves.length;
+        }
+        assertFalse(facelets, seen.isEmpty());
+        assertEquals(facelets, 0, iter.getError());
+    }
+
+    private static String scramble(Random gen, int length) {
+        CubieCube cc = new CubieCube();
+        CubieCube prod = new CubieCube();
+        int last = -1;
+        for (int i = 0; i < length; i++) {
+            int m;
+            do {
+                m = gen.nextInt(18);
+            } while (m / 3 == last);
+            last = m / 3;
+            CubieCube.CornMult(cc, CubieCube.moveCube[m], prod);
+            CubieCube.EdgeMult(cc, CubieCube.moveCube[m], prod);
+            cc.copy(prod);
+        }
+        return Util.toFaceCube(cc);
+    }
+}
@@ -33,6 +33,10 @@ public abstract class CameraBridgeViewBase extends SurfaceView implements Surfac
     private static final int MAX_UNSPECIFIED = -1;
     private static final int STOPPED = 0;
     private static final int STARTED = 1;
+    private static final PipelineMetrics.Stage LISTENER_STAGE = PipelineMetrics.stage("camera.listener");
+    private static final PipelineMetrics.Stage BITMAP_STAGE = PipelineMetrics.stage("camera.bitmap");
+    private static final PipelineMetrics.Stage DRAW_STAGE = PipelineMetrics.stage("camera.draw");
+    private static final PipelineMetrics.Counter SKIPPED_COUNTER = PipelineMetrics.counter("camera.draw_skipped");
 
     private int mState = STOPPED;
     private Bitmap mCacheBitmap;
@@ -50,6 +54,12 @@ public abstract class CameraBridgeViewBase extends SurfaceView implements Surfac
     protected boolean mEnabled;
     protected FpsMeter mFpsMeter = null;
 
+    private volatile boolean mPreviewEnabled = true;
+    private volatile int mPreviewFrameInterval = 1;
+    private int mPreviewFrameCount;
+    private boolean mDrawCurrentFrame = true;
+    private boolean mPreviewCleared;
+
     public static final int CAMERA_ID_ANY   = -1;
     public static final int CAMERA_ID_BACK  = 99;
     public static final int CAMERA_ID_FRONT = 98;
@@ -188,6 +198,27 @@ public abstract class CameraBridgeViewBase extends SurfaceView implements Surfac
          * This method returns single channel gray scale Mat with frame
          */
         public Mat gray();
+
+        /**
+         * This method averages a region of the frame straight from the camera data,
+         * without converting the whole frame
+         * @param roi - region in frame coordinates, clipped to the frame
+         * @param yuv - receives the mean Y, U and V values (0..255), at least 3 elements
+         */
+        public void meanYuv(org.opencv.core.Rect roi, double[] yuv);
+
+        /**
+         * This method returns RGBA Mat with the frame downscaled by the given factor,
+         * built by subsampling the camera data
+         * @param factor - downscale factor, 1 returns the same image as rgba()
+         */
+        public Mat rgbaReduced(int factor);
+
+        /**
+         * Copies the NV21 camera data, e.g. for analysis on another thread once the frame is gone
+         * @param dst - image to copy to, its array is reused if the size fits
+         */
+        public void copyYuv(Nv21Image dst);
     };
 
     public void surfaceChanged(SurfaceHolder arg0, int arg1, int arg2, int arg3) {
@@ -255,6 +286,38 @@ public abstract class CameraBridgeViewBase extends SurfaceView implements Surfac
             mFpsMeter = null;
     }
 
+    /**
+     * This method switches the on screen preview on or off. With the preview off frames are still delivered
+     * to the listener, but the returned Mat is neither converted to a Bitmap nor drawn (analysis-only mode).
+     * @param enabled - false clears the surface once and stops drawing
+     */
+    public void setPreviewEnabled(boolean enabled) {
+        mPreviewEnabled = enabled;
+    }
+
+    public boolean isPreviewEnabled() {
+        return mPreviewEnabled;
+    }
+
+    /**
+     * This method reduces the preview rate: only every interval-th frame is converted and drawn,
+     * all frames are still delivered to the listener.
+     * @param interval - 1 draws every frame
+     */
+    public void setPreviewFrameInterval(int interval) {
+        if (interval < 1)
+            throw new IllegalArgumentException("Preview frame interval must be at least 1, got " + interval);
+        mPreviewFrameInterval = interval;
+    }
+
+    /**
+     * This method tells the listener whether the frame currently passed to onCameraFrame() will be drawn.
+     * Listeners can skip preparing the returned Mat when it won't be. Only valid inside onCameraFrame().
+     */
+    public boolean isFrameDrawn() {
+        return mDrawCurrentFrame;
+    }
+
     /**
      *
      * @param listener
@@ -388,16 +451,36 @@ public abstract class CameraBridgeViewBase extends SurfaceView implements Surfac
     protected void deliverAndDrawFrame(CvCameraViewFrame frame) {
         Mat modified;
 
+        mDrawCurrentFrame = mPreviewEnabled && mPreviewFrameCount++ % mPreviewFrameInterval == 0;
+
+        long start = PipelineMetrics.now();
         if (mListener != null) {
             modified = mListener.onCameraFrame(frame);
         } else {
-            modified = frame.rgba();
+            modified = mDrawCurrentFrame ? frame.rgba() : null;
+        }
+        start = LISTENER_STAGE.recordSince(start);
+
+        if (!mDrawCurrentFrame) {
+            SKIPPED_COUNTER.increment();
+            if (!mPreviewEnabled && !mPreviewCleared) {
+                /* Don't leave a stale frame on screen */
+                Canvas canvas = getHolder().lockCanvas();
+                if (canvas != null) {
+                    canvas.drawColor(0, android.graphics.PorterDuff.Mode.CLEAR);
+                    getHolder().unlockCanvasAndPost(canvas);
+                }
+                mPreviewCleared = true;
+            }
+            return;
         }
+        mPreviewCleared = false;
 
         boolean bmpValid = true;
         if (modified != null) {
             try {
                 Utils.matToBitmap(modified, mCacheBitmap);
+                start = BITMAP_STAGE.recordSince(start);
             } catch(Exception e) {
                 Log.e(TAG, "Mat type: " + modified);
                 Log.e(TAG, "Bitmap type: " + mCacheBitmap.getWidth() + "*" + mCacheBitmap.getHeight());
@@ -432,6 +515,7 @@ public abstract class CameraBridgeViewBase extends SurfaceView implements Surfac
                     mFpsMeter.draw(canvas, 20, 30);
                 }
                 getHolder().unlockCanvasAndPost(canvas);
+                DRAW_STAGE.recordSince(start);
             }
         }
     }
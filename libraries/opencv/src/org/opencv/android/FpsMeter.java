@@ -7,16 +7,20 @@ import org.opencv.core.Core;
 import android.graphics.Canvas;
 import android.graphics.Color;
 import android.graphics.Paint;
-import android.util.Log;
 
+/**
+ * Draws the frame rate on the preview. Frame intervals are recorded into the
+ * "preview.frame_interval" stage of PipelineMetrics, which is where they should be read from.
+ */
 public class FpsMeter {
-    private static final String TAG               = "FpsMeter";
     private static final int    STEP              = 20;
+    private static final PipelineMetrics.Stage FRAME_INTERVAL_STAGE = PipelineMetrics.stage("preview.frame_interval");
     private static final DecimalFormat FPS_FORMAT = new DecimalFormat("0.00");
 
     private int                 mFramesCouner;
     private double              mFrequency;
     private long                mprevFrameTime;
+    private long                mLastFrameNanos;
     private String              mStrfps;
     Paint                       mPaint;
     boolean                     mIsInitialized = false;
@@ -27,6 +31,7 @@ public class FpsMeter {
         mFramesCouner = 0;
         mFrequency = Core.getTickFrequency();
         mprevFrameTime = Core.getTickCount();
+        mLastFrameNanos = PipelineMetrics.now();
         mStrfps = "";
 
         mPaint = new Paint();
@@ -39,6 +44,7 @@ public class FpsMeter {
             init();
             mIsInitialized = true;
         } else {
+            mLastFrameNanos = FRAME_INTERVAL_STAGE.recordSince(mLastFrameNanos);
             mFramesCouner++;
             if (mFramesCouner % STEP == 0) {
                 long time = Core.getTickCount();
@@ -48,7 +54,6 @@ public class FpsMeter {
                     mStrfps = FPS_FORMAT.format(fps) + " FPS@" + Integer.valueOf(mWidth) + "x" + Integer.valueOf(mHeight);
                 else
                     mStrfps = FPS_FORMAT.format(fps) + " FPS";
-                Log.i(TAG, mStrfps);
             }
         }
     }
@@ -59,7 +64,6 @@ public class FpsMeter {
     }
 
     public void draw(Canvas canvas, float offsetx, float offsety) {
-        Log.d(TAG, mStrfps);
         canvas.drawText(mStrfps, offsetx, offsety, mPaint);
     }
 
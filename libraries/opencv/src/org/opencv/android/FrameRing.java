@@ -0,0 +1,179 @@
+package org.opencv.android;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * This class hands camera preview buffers from the camera callback thread to a single processing
+ * thread without locks and without copying the frame data.
+ * A fixed set of buffers circulates between the frame source (e.g. Camera callback buffers), a
+ * single "latest frame" slot and the consumer. Publishing a frame while an older one still waits
+ * in the slot drops the older one and gives its buffer back to the source, so the consumer always
+ * gets the newest frame and the source never blocks.
+ * The frame source is abstracted by BufferRecycler, so the ring can be driven by a synthetic source.
+ */
+public class FrameRing {
+
+    public interface BufferRecycler {
+        /**
+         * Gives a buffer back to the frame source so it can be filled again
+         */
+        public void recycle(byte[] buffer);
+    }
+
+    private static final int EMPTY = -1;
+
+    private final byte[][] mBuffers;
+    private final long[] mTimestamps;
+    private final BufferRecycler mRecycler;
+    private final AtomicInteger mLatest = new AtomicInteger(EMPTY);
+
+    private final AtomicLong mPublished = new AtomicLong();
+    private final AtomicLong mDelivered = new AtomicLong();
+    private final AtomicLong mDropped = new AtomicLong();
+    private final AtomicLong mLate = new AtomicLong();
+
+    private volatile PipelineMetrics.Counter mDroppedCounter;
+    private volatile PipelineMetrics.Counter mLateCounter;
+
+    private volatile Thread mConsumer;
+    private volatile boolean mStopped;
+    private volatile long mFrameInterval;
+    private long mLastPublish;
+    private long mTakenTimestamp;
+
+    /**
+     * @param bufferCount - number of buffers, at least 3: one being filled, one waiting and one being processed
+     * @param bufferSize - size of each frame buffer in bytes
+     * @param recycler - receives buffers that may be filled again
+     */
+    public FrameRing(int bufferCount, int bufferSize, BufferRecycler recycler) {
+        if (bufferCount < 3)
+            throw new IllegalArgumentException("At least 3 frame buffers are needed, got " + bufferCount);
+        mBuffers = new byte[bufferCount][bufferSize];
+        mTimestamps = new long[bufferCount];
+        mRecycler = recycler;
+    }
+
+    /**
+     * Counts every dropped and late frame in the given metrics counters as it happens, null for none
+     */
+    public void setCounters(PipelineMetrics.Counter dropped, PipelineMetrics.Counter late) {
+        mDroppedCounter = dropped;
+        mLateCounter = late;
+    }
+
+    /**
+     * This method returns all buffers of the ring, they have to be handed to the frame source once
+     */
+    public byte[][] getBuffers() {
+        return mBuffers;
+    }
+
+    /**
+     * Called by the frame source when a buffer has been filled. Never blocks.
+     * @param buffer - one of the ring's buffers
+     */
+    public void publish(byte[] buffer) {
+        int idx = indexOf(buffer);
+        if (idx == EMPTY)
+            return;
+
+        long now = System.nanoTime();
+        if (mLastPublish != 0)
+            mFrameInterval = now - mLastPublish;
+        mLastPublish = now;
+        mTimestamps[idx] = now;
+        mPublished.incrementAndGet();
+
+        int stale = mLatest.getAndSet(idx);
+        if (stale != EMPTY) {
+            mDropped.incrementAndGet();
+            PipelineMetrics.Counter counter = mDroppedCounter;
+            if (counter != null)
+                counter.increment();
+            mRecycler.recycle(mBuffers[stale]);
+        }
+        LockSupport.unpark(mConsumer);
+    }
+
+    /**
+     * Called by the consumer thread, waits for the next frame.
+     * The returned buffer belongs to the consumer until it is passed to release().
+     * @return the newest frame, or null once stop() has been called
+     */
+    public byte[] take() {
+        mConsumer = Thread.currentThread();
+        while (!mStopped) {
+            int idx = mLatest.getAndSet(EMPTY);
+            if (idx != EMPTY) {
+                long interval = mFrameInterval;
+                mTakenTimestamp = mTimestamps[idx];
+                if (interval > 0 && System.nanoTime() - mTakenTimestamp > interval) {
+                    mLate.incrementAndGet();
+                    PipelineMetrics.Counter counter = mLateCounter;
+                    if (counter != null)
+                        counter.increment();
+                }
+                mDelivered.incrementAndGet();
+                return mBuffers[idx];
+            }
+            LockSupport.park(this);
+        }
+        return null;
+    }
+
+    /**
+     * Called by the consumer when it is done with a buffer returned by take()
+     */
+    public void release(byte[] buffer) {
+        mRecycler.recycle(buffer);
+    }
+
+    /**
+     * Wakes up the consumer, further take() calls return null
+     */
+    public void stop() {
+        mStopped = true;
+        LockSupport.unpark(mConsumer);
+    }
+
+    private int indexOf(byte[] buffer) {
+        for (int i = 0; i < mBuffers.length; i++) {
+            if (mBuffers[i] == buffer)
+                return i;
+        }
+        return EMPTY;
+    }
+
+    /**
+     * This method returns the System.nanoTime() at which the frame last returned by take() was published.
+     * Only meaningful on the consumer thread.
+     */
+    public long getTakenTimestamp() {
+        return mTakenTimestamp;
+    }
+
+    public long getPublishedFrames() {
+        return mPublished.get();
+    }
+
+    public long getDeliveredFrames() {
+        return mDelivered.get();
+    }
+
+    /**
+     * This method returns the number of frames replaced by a newer one before the consumer took them
+     */
+    public long getDroppedFrames() {
+        return mDropped.get();
+    }
+
+    /**
+     * This method returns the number of frames that waited longer than one frame interval before the consumer took them
+     */
+    public long getLateFrames() {
+        return mLate.get();
+    }
+}
@@ -1,5 +1,6 @@
 package org.opencv.android;
 
+import java.nio.ByteBuffer;
 import java.util.List;
 
 import android.content.Context;
@@ -15,6 +16,7 @@ import android.view.ViewGroup.LayoutParams;
 import org.opencv.BuildConfig;
 import org.opencv.core.CvType;
 import org.opencv.core.Mat;
+import org.opencv.core.Rect;
 import org.opencv.core.Size;
 import org.opencv.imgproc.Imgproc;
 
@@ -31,15 +33,20 @@ public class JavaCameraView extends CameraBridgeViewBase implements PreviewCallb
 
     private static final int MAGIC_TEXTURE_ID = 10;
     private static final String TAG = "JavaCameraView";
+    private static final PipelineMetrics.Stage QUEUE_STAGE = PipelineMetrics.stage("camera.queue");
+    private static final PipelineMetrics.Counter DROPPED_COUNTER = PipelineMetrics.counter("camera.dropped");
+    private static final PipelineMetrics.Counter LATE_COUNTER = PipelineMetrics.counter("camera.late");
 
-    private byte mBuffer[];
-    private Mat[] mFrameChain;
-    private int mChainIdx = 0;
+    private FrameRing mFrameRing;
+    private int mFrameBufferCount = 3;
+    private Mat mYuvFrame;
     private Thread mThread;
-    private boolean mStopThread;
+    private volatile boolean mStopThread;
+    private long mDroppedFrames;
+    private long mLateFrames;
 
     protected Camera mCamera;
-    protected JavaCameraFrame[] mCameraFrame;
+    protected JavaCameraFrame mCameraFrame;
     private SurfaceTexture mSurfaceTexture;
 
     public static class JavaCameraSizeAccessor implements ListItemAccessor {
@@ -175,20 +182,18 @@ public class JavaCameraView extends CameraBridgeViewBase implements PreviewCallb
 
                     int size = mFrameWidth * mFrameHeight;
                     size  = size * ImageFormat.getBitsPerPixel(params.getPreviewFormat()) / 8;
-                    mBuffer = new byte[size];
-
-                    mCamera.addCallbackBuffer(mBuffer);
+                    /* Camera fills the ring buffers directly, they are handed back once processed or dropped */
+                    mFrameRing = new FrameRing(mFrameBufferCount, size, new CameraBufferRecycler(mCamera));
+                    mFrameRing.setCounters(DROPPED_COUNTER, LATE_COUNTER);
+                    for (byte[] buffer : mFrameRing.getBuffers())
+                        mCamera.addCallbackBuffer(buffer);
                     mCamera.setPreviewCallbackWithBuffer(this);
 
-                    mFrameChain = new Mat[2];
-                    mFrameChain[0] = new Mat(mFrameHeight + (mFrameHeight/2), mFrameWidth, CvType.CV_8UC1);
-                    mFrameChain[1] = new Mat(mFrameHeight + (mFrameHeight/2), mFrameWidth, CvType.CV_8UC1);
+                    mYuvFrame = new Mat(mFrameHeight + (mFrameHeight/2), mFrameWidth, CvType.CV_8UC1);
 
                     AllocateCache();
 
-                    mCameraFrame = new JavaCameraFrame[2];
-                    mCameraFrame[0] = new JavaCameraFrame(mFrameChain[0], mFrameWidth, mFrameHeight);
-                    mCameraFrame[1] = new JavaCameraFrame(mFrameChain[1], mFrameWidth, mFrameHeight);
+                    mCameraFrame = new JavaCameraFrame(mYuvFrame, mFrameWidth, mFrameHeight);
 
                     if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.HONEYCOMB) {
                         mSurfaceTexture = new SurfaceTexture(MAGIC_TEXTURE_ID);
@@ -220,18 +225,44 @@ public class JavaCameraView extends CameraBridgeViewBase implements PreviewCallb
                 mCamera.release();
             }
             mCamera = null;
-            if (mFrameChain != null) {
-                mFrameChain[0].release();
-                mFrameChain[1].release();
-            }
-            if (mCameraFrame != null) {
-                mCameraFrame[0].release();
-                mCameraFrame[1].release();
+            if (mFrameRing != null) {
+                mDroppedFrames += mFrameRing.getDroppedFrames();
+                mLateFrames += mFrameRing.getLateFrames();
+                Log.i(TAG, "Delivered " + mFrameRing.getDeliveredFrames() + " of " + mFrameRing.getPublishedFrames()
+                        + " frames, dropped " + mFrameRing.getDroppedFrames() + ", late " + mFrameRing.getLateFrames());
+                mFrameRing = null;
             }
+            if (mYuvFrame != null)
+                mYuvFrame.release();
+            if (mCameraFrame != null)
+                mCameraFrame.release();
         }
     }
 
-    private boolean mCameraFrameReady = false;
+    /**
+     * This method sets the number of preview buffers shared between the camera and the processing thread.
+     * Takes effect on the next camera connection.
+     * @param count - at least 3: one being filled by the camera, one waiting and one being processed
+     */
+    public void setFrameBufferCount(int count) {
+        if (count < 3)
+            throw new IllegalArgumentException("At least 3 frame buffers are needed, got " + count);
+        mFrameBufferCount = count;
+    }
+
+    /**
+     * This method returns the number of frames that were replaced by a newer one before they could be processed
+     */
+    public synchronized long getDroppedFrameCount() {
+        return mDroppedFrames + (mFrameRing != null ? mFrameRing.getDroppedFrames() : 0);
+    }
+
+    /**
+     * This method returns the number of processed frames that waited longer than one frame interval
+     */
+    public synchronized long getLateFrameCount() {
+        return mLateFrames + (mFrameRing != null ? mFrameRing.getLateFrames() : 0);
+    }
 
     @Override
     protected boolean connectCamera(int width, int height) {
@@ -244,8 +275,6 @@ public class JavaCameraView extends CameraBridgeViewBase implements PreviewCallb
         if (!initializeCamera(width, height))
             return false;
 
-        mCameraFrameReady = false;
-
         /* now we can start update thread */
         Log.d(TAG, "Starting processing thread");
         mStopThread = false;
@@ -264,9 +293,8 @@ public class JavaCameraView extends CameraBridgeViewBase implements PreviewCallb
         try {
             mStopThread = true;
             Log.d(TAG, "Notify thread");
-            synchronized (this) {
-                this.notify();
-            }
+            if (mFrameRing != null)
+                mFrameRing.stop();
             Log.d(TAG, "Wating for thread");
             if (mThread != null)
                 mThread.join();
@@ -278,49 +306,114 @@ public class JavaCameraView extends CameraBridgeViewBase implements PreviewCallb
 
         /* Now release camera */
         releaseCamera();
-
-        mCameraFrameReady = false;
     }
 
     @Override
     public void onPreviewFrame(byte[] frame, Camera arg1) {
         if (BuildConfig.DEBUG)
             Log.d(TAG, "Preview Frame received. Frame size: " + frame.length);
-        synchronized (this) {
-            mFrameChain[mChainIdx].put(0, 0, frame);
-            mCameraFrameReady = true;
-            this.notify();
+        /* No copy here, the buffer stays with the processing thread until it is done with it */
+        FrameRing ring = mFrameRing;
+        if (ring != null)
+            ring.publish(frame);
+    }
+
+    private static class CameraBufferRecycler implements FrameRing.BufferRecycler {
+        private final Camera mCamera;
+
+        public CameraBufferRecycler(Camera camera) {
+            mCamera = camera;
+        }
+
+        @Override
+        public void recycle(byte[] buffer) {
+            mCamera.addCallbackBuffer(buffer);
         }
-        if (mCamera != null)
-            mCamera.addCallbackBuffer(mBuffer);
     }
 
     private class JavaCameraFrame implements CvCameraViewFrame {
         @Override
         public Mat gray() {
-            return mYuvFrameData.submat(0, mHeight, 0, mWidth);
+            /* The header is kept, the Y plane never moves inside mYuvFrameData */
+            if (mGray == null)
+                mGray = mYuvFrameData.submat(0, mHeight, 0, mWidth);
+            yuvMat(mHeight);
+            return mGray;
         }
 
         @Override
         public Mat rgba() {
-            Imgproc.cvtColor(mYuvFrameData, mRgba, Imgproc.COLOR_YUV2RGBA_NV21, 4);
+            Imgproc.cvtColor(yuvMat(mYuvFrameData.rows()), mRgba, Imgproc.COLOR_YUV2RGBA_NV21, 4);
             return mRgba;
         }
 
+        @Override
+        public void meanYuv(Rect roi, double[] yuv) {
+            Nv21Image.meanYuv(mYuvData, mWidth, mHeight, roi, yuv);
+        }
+
+        @Override
+        public Mat rgbaReduced(int factor) {
+            if (factor <= 1)
+                return rgba();
+            if (mReducedFactor == factor)
+                return mReduced;
+
+            mReducedData = Nv21Image.rgbaReduced(mYuvData, mWidth, mHeight, factor, mReducedData, mReduced);
+            mReducedFactor = factor;
+            return mReduced;
+        }
+
+        @Override
+        public void copyYuv(Nv21Image dst) {
+            dst.set(mYuvData, mWidth, mHeight);
+        }
+
         public JavaCameraFrame(Mat Yuv420sp, int width, int height) {
             super();
             mWidth = width;
             mHeight = height;
             mYuvFrameData = Yuv420sp;
             mRgba = new Mat();
+            mReduced = new Mat();
+        }
+
+        /**
+         * Points the frame at new camera data, drops everything derived from the old data
+         */
+        public void setData(byte[] yuvData) {
+            mYuvData = yuvData;
+            mYuvBuffer = ByteBuffer.wrap(yuvData);
+            mYuvRowsValid = 0;
+            mReducedFactor = 0;
+        }
+
+        /* Copies the camera data into the Mat up to the given row, gray() only needs the Y plane */
+        private Mat yuvMat(int rows) {
+            if (mYuvRowsValid < rows) {
+                mYuvBuffer.limit(rows * mWidth).position(0);
+                mYuvFrameData.put(0, 0, mYuvBuffer);
+                mYuvRowsValid = rows;
+            }
+            return mYuvFrameData;
         }
 
         public void release() {
             mRgba.release();
+            mReduced.release();
+            if (mGray != null)
+                mGray.release();
         }
 
         private Mat mYuvFrameData;
+        private byte[] mYuvData;
+        private ByteBuffer mYuvBuffer;
+        private int mYuvRowsValid;
         private Mat mRgba;
+        private Mat mGray;
+        private Mat mReduced;
+        private byte[] mReducedData;
+        private int mReducedFactor;
         private int mWidth;
         private int mHeight;
     };
@@ -329,29 +422,19 @@ public class JavaCameraView extends CameraBridgeViewBase implements PreviewCallb
 
         @Override
         public void run() {
-            do {
-                boolean hasFrame = false;
-                synchronized (JavaCameraView.this) {
-                    try {
-                        while (!mCameraFrameReady && !mStopThread) {
-                            JavaCameraView.this.wait();
-                        }
-                    } catch (InterruptedException e) {
-                        e.printStackTrace();
-                    }
-                    if (mCameraFrameReady)
-                    {
-                        mChainIdx = 1 - mChainIdx;
-                        mCameraFrameReady = false;
-                        hasFrame = true;
-                    }
-                }
-
-                if (!mStopThread && hasFrame) {
-                    if (!mFrameChain[1 - mChainIdx].empty())
-                        deliverAndDrawFrame(mCameraFrame[1 - mChainIdx]);
+            FrameRing ring = mFrameRing;
+            while (!mStopThread) {
+                byte[] data = ring.take();
+                if (data == null)
+                    break;
+                try {
+                    QUEUE_STAGE.recordSince(ring.getTakenTimestamp());
+                    mCameraFrame.setData(data);
+                    deliverAndDrawFrame(mCameraFrame);
+                } finally {
+                    ring.release(data);
                 }
-            } while (!mStopThread);
+            }
             Log.d(TAG, "Finish processing thread");
         }
     }
@@ -0,0 +1,123 @@
+package org.opencv.android;
+
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+import org.opencv.core.Rect;
+
+/**
+ * This class holds an NV21 image in a Java array, e.g. a copy of a camera frame that is analyzed
+ * on another thread after the camera buffer went back to the camera. It offers the same analysis
+ * as CvCameraViewFrame.meanYuv() and rgbaReduced(), JavaCameraView uses the static helpers for the
+ * camera buffer itself. The array is reused by the next copy of a frame of the same size.
+ */
+public class Nv21Image {
+
+    private byte[] mData;
+    private int mWidth;
+    private int mHeight;
+    private byte[] mReducedData;
+
+    /**
+     * Copies the first width * height * 3 / 2 bytes of an NV21 buffer
+     */
+    public void set(byte[] data, int width, int height) {
+        int size = width * height * 3 / 2;
+        if (mData == null || mData.length != size)
+            mData = new byte[size];
+        System.arraycopy(data, 0, mData, 0, size);
+        mWidth = width;
+        mHeight = height;
+    }
+
+    public int getWidth() {
+        return mWidth;
+    }
+
+    public int getHeight() {
+        return mHeight;
+    }
+
+    /**
+     * Averages the Y, U and V values inside roi, see CvCameraViewFrame.meanYuv()
+     */
+    public void meanYuv(Rect roi, double[] yuv) {
+        meanYuv(mData, mWidth, mHeight, roi, yuv);
+    }
+
+    /**
+     * Fills dst with the RGBA image downscaled by the given factor, see CvCameraViewFrame.rgbaReduced()
+     */
+    public void rgbaReduced(int factor, Mat dst) {
+        mReducedData = rgbaReduced(mData, mWidth, mHeight, factor, mReducedData, dst);
+    }
+
+    static void meanYuv(byte[] data, int width, int height, Rect roi, double[] yuv) {
+        int x0 = Math.max(roi.x, 0);
+        int y0 = Math.max(roi.y, 0);
+        int x1 = Math.min(roi.x + roi.width, width);
+        int y1 = Math.min(roi.y + roi.height, height);
+        if (x0 >= x1 || y0 >= y1) {
+            yuv[0] = yuv[1] = yuv[2] = 0;
+            return;
+        }
+
+        long ySum = 0;
+        for (int y = y0; y < y1; y++) {
+            int row = y * width;
+            for (int x = x0; x < x1; x++) {
+                ySum += data[row + x] & 0xff;
+            }
+        }
+
+        /* NV21: full resolution Y plane followed by interleaved V/U at half resolution */
+        long uSum = 0;
+        long vSum = 0;
+        int uvCount = 0;
+        int uvPlane = width * height;
+        for (int y = y0 >> 1; y < (y1 + 1) >> 1; y++) {
+            int row = uvPlane + y * width;
+            for (int x = x0 >> 1; x < (x1 + 1) >> 1; x++) {
+                vSum += data[row + 2 * x] & 0xff;
+                uSum += data[row + 2 * x + 1] & 0xff;
+                uvCount++;
+            }
+        }
+
+        yuv[0] = (double) ySum / ((x1 - x0) * (y1 - y0));
+        yuv[1] = (double) uSum / uvCount;
+        yuv[2] = (double) vSum / uvCount;
+    }
+
+    /* Fills dst through the scratch array rgba, which is returned, reallocated if it does not fit */
+    static byte[] rgbaReduced(byte[] data, int width, int height, int factor, byte[] rgba, Mat dst) {
+        int reducedWidth = width / factor;
+        int reducedHeight = height / factor;
+        if (rgba == null || rgba.length != reducedWidth * reducedHeight * 4)
+            rgba = new byte[reducedWidth * reducedHeight * 4];
+
+        /* Nearest neighbour subsampling, same BT.601 fixed point math as COLOR_YUV2RGBA_NV21 */
+        int uvPlane = width * height;
+        int out = 0;
+        for (int y = 0; y < reducedHeight; y++) {
+            int sy = y * factor;
+            int yRow = sy * width;
+            int uvRow = uvPlane + (sy >> 1) * width;
+            for (int x = 0; x < reducedWidth; x++) {
+                int sx = x * factor;
+                int yy = Math.max((data[yRow + sx] & 0xff) - 16, 0) * 1220542;
+                int v = (data[uvRow + (sx & ~1)] & 0xff) - 128;
+                int u = (data[uvRow + (sx & ~1) + 1] & 0xff) - 128;
+                int r = (yy + 1673527 * v + (1 << 19)) >> 20;
+                int g = (yy - 852492 * v - 409993 * u + (1 << 19)) >> 20;
+                int b = (yy + 2116026 * u + (1 << 19)) >> 20;
+                rgba[out++] = (byte) (r < 0 ? 0 : r > 255 ? 255 : r);
+                rgba[out++] = (byte) (g < 0 ? 0 : g > 255 ? 255 : g);
+                rgba[out++] = (byte) (b < 0 ? 0 : b > 255 ? 255 : b);
+                rgba[out++] = (byte) 255;
+            }
+        }
+        dst.create(reducedHeight, reducedWidth, CvType.CV_8UC4);
+        dst.put(0, 0, rgba);
+        return rgba;
+    }
+}
@@ -0,0 +1,227 @@
+package org.opencv.android;
+
+import java.io.PrintStream;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * This class collects latency histograms and event counters for the stages of the
+ * scan - solve - execute pipeline.
+ * Stages and counters are created once by name and kept for the life of the process, callers are
+ * expected to hold on to them, e.g.:
+ *
+ *     private static final PipelineMetrics.Stage DRAW = PipelineMetrics.stage("preview.draw");
+ *     ...
+ *     long start = PipelineMetrics.now();
+ *     draw();
+ *     DRAW.recordSince(start);
+ *
+ * Timings use the monotonic System.nanoTime() clock. The class has no Android dependencies, so
+ * the same dump and Reporter work on a plain JVM.
+ */
+public class PipelineMetrics {
+
+    private static final Map<String, Stage> sStages = new ConcurrentSkipListMap<String, Stage>();
+    private static final Map<String, Counter> sCounters = new ConcurrentSkipListMap<String, Counter>();
+    private static final Object sLock = new Object();
+
+    private PipelineMetrics() {
+    }
+
+    public static long now() {
+        return System.nanoTime();
+    }
+
+    /**
+     * This method returns the stage with the given name, creating it on first use
+     */
+    public static Stage stage(String name) {
+        Stage stage = sStages.get(name);
+        if (stage == null) {
+            synchronized (sLock) {
+                stage = sStages.get(name);
+                if (stage == null) {
+                    stage = new Stage(name);
+                    sStages.put(name, stage);
+                }
+            }
+        }
+        return stage;
+    }
+
+    /**
+     * This method returns the counter with the given name, creating it on first use
+     */
+    public static Counter counter(String name) {
+        Counter counter = sCounters.get(name);
+        if (counter == null) {
+            synchronized (sLock) {
+                counter = sCounters.get(name);
+                if (counter == null) {
+                    counter = new Counter(name);
+                    sCounters.put(name, counter);
+                }
+            }
+        }
+        return counter;
+    }
+
+    /**
+     * This method returns a human readable summary of all stages and counters, one per line, sorted by name
+     */
+    public static String dump() {
+        StringBuilder sb = new StringBuilder();
+        for (Stage stage : sStages.values()) {
+            LatencyHistogram h = stage.getHistogram();
+            sb.append(String.format(Locale.US, "%s count=%d mean=%.2fms p50=%.2fms p90=%.2fms p99=%.2fms max=%.2fms%n",
+                    stage.getName(), h.getCount(), h.getMean() / 1e6, h.getPercentile(50) / 1e6,
+                    h.getPercentile(90) / 1e6, h.getPercentile(99) / 1e6, h.getMax() / 1e6));
+        }
+        for (Counter counter : sCounters.values()) {
+            sb.append(counter.getName()).append('=').append(counter.get()).append(String.format("%n"));
+        }
+        return sb.toString();
+    }
+
+    /**
+     * This method clears all recorded values, stages and counters stay registered
+     */
+    public static void reset() {
+        for (Stage stage : sStages.values())
+            stage.getHistogram().reset();
+        for (Counter counter : sCounters.values())
+            counter.reset();
+    }
+
+    public static class Stage {
+        private final String mName;
+        private final LatencyHistogram mHistogram = new LatencyHistogram();
+
+        private Stage(String name) {
+            mName = name;
+        }
+
+        public void record(long nanos) {
+            mHistogram.record(nanos);
+        }
+
+        /**
+         * Records the time elapsed since start, which was taken from now()
+         * @return the current time, so consecutive stages can be chained
+         */
+        public long recordSince(long start) {
+            long end = System.nanoTime();
+            mHistogram.record(end - start);
+            return end;
+        }
+
+        public String getName() {
+            return mName;
+        }
+
+        public LatencyHistogram getHistogram() {
+            return mHistogram;
+        }
+    }
+
+    public static class Counter {
+        private final String mName;
+        private final AtomicLong mValue = new AtomicLong();
+
+        private Counter(String name) {
+            mName = name;
+        }
+
+        public void increment() {
+            mValue.incrementAndGet();
+        }
+
+        public void add(long delta) {
+            mValue.addAndGet(delta);
+        }
+
+        public long get() {
+            return mValue.get();
+        }
+
+        public void reset() {
+            mValue.set(0);
+        }
+
+        public String getName() {
+            return mName;
+        }
+    }
+
+    /**
+     * This class periodically hands the dump to a sink on a daemon thread
+     */
+    public static class Reporter implements Runnable {
+
+        public interface Sink {
+            public void report(String dump);
+        }
+
+        private final Sink mSink;
+        private final long mPeriodMillis;
+        private volatile boolean mStopped;
+        private Thread mThread;
+
+        public Reporter(Sink sink, long periodMillis) {
+            mSink = sink;
+            mPeriodMillis = periodMillis;
+        }
+
+        /**
+         * Creates a reporter printing to a stream, e.g. System.out on a desktop JVM
+         */
+        public Reporter(final PrintStream out, long periodMillis) {
+            this(new Sink() {
+                @Override
+                public void report(String dump) {
+                    out.print(dump);
+                    out.flush();
+                }
+            }, periodMillis);
+        }
+
+        public synchronized void start() {
+            if (mThread != null)
+                return;
+            mStopped = false;
+            mThread = new Thread(this, "PipelineMetrics");
+            mThread.setDaemon(true);
+            mThread.start();
+        }
+
+        /**
+         * Stops the reporter after one last report
+         */
+        public synchronized void stop() {
+            if (mThread == null)
+                return;
+            mStopped = true;
+            mThread.interrupt();
+            try {
+                mThread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            mThread = null;
+        }
+
+        @Override
+        public void run() {
+            while (!mStopped) {
+                try {
+                    Thread.sleep(mPeriodMillis);
+                } catch (InterruptedException e) {
+                    /* stop() wants a final report */
+                }
+                mSink.report(dump());
+            }
+        }
+    }
+}
@@ -11,6 +11,8 @@ public class Mat {
         if (addr == 0)
             throw new java.lang.UnsupportedOperationException("Native object address is NULL");
         nativeObj = addr;
+        if (MatTracker.sEnabled)
+            MatTracker.track(this);
     }
 
     //
@@ -22,6 +24,8 @@ public class Mat {
     {
 
         nativeObj = n_Mat();
+        if (MatTracker.sEnabled)
+            MatTracker.track(this);
 
         return;
     }
@@ -35,6 +39,8 @@ public class Mat {
     {
 
         nativeObj = n_Mat(rows, cols, type);
+        if (MatTracker.sEnabled)
+            MatTracker.track(this);
 
         return;
     }
@@ -48,6 +54,8 @@ public class Mat {
     {
 
         nativeObj = n_Mat(size.width, size.height, type);
+        if (MatTracker.sEnabled)
+            MatTracker.track(this);
 
         return;
     }
@@ -61,6 +69,8 @@ public class Mat {
     {
 
         nativeObj = n_Mat(rows, cols, type, s.val[0], s.val[1], s.val[2], s.val[3]);
+        if (MatTracker.sEnabled)
+            MatTracker.track(this);
 
         return;
     }
@@ -74,6 +84,8 @@ public class Mat {
     {
 
         nativeObj = n_Mat(size.width, size.height, type, s.val[0], s.val[1], s.val[2], s.val[3]);
+        if (MatTracker.sEnabled)
+            MatTracker.track(this);
 
         return;
     }
@@ -87,6 +99,8 @@ public class Mat {
     {
 
         nativeObj = n_Mat(m.nativeObj, rowRange.start, rowRange.end, colRange.start, colRange.end);
+        if (MatTracker.sEnabled)
+            MatTracker.track(this);
 
         return;
     }
@@ -96,6 +110,8 @@ public class Mat {
     {
 
         nativeObj = n_Mat(m.nativeObj, rowRange.start, rowRange.end);
+        if (MatTracker.sEnabled)
+            MatTracker.track(this);
 
         return;
     }
@@ -109,6 +125,8 @@ public class Mat {
     {
 
         nativeObj = n_Mat(m.nativeObj, roi.y, roi.y + roi.height, roi.x, roi.x + roi.width);
+        if (MatTracker.sEnabled)
+            MatTracker.track(this);
 
         return;
     }
@@ -640,6 +658,8 @@ public class Mat {
     {
 
         n_release(nativeObj);
+        if (MatTracker.sEnabled)
+            MatTracker.untrack(this);
 
         return;
     }
@@ -908,6 +928,8 @@ public class Mat {
 
     @Override
     protected void finalize() throws Throwable {
+        if (MatTracker.sEnabled)
+            MatTracker.untrack(this);
         n_delete(nativeObj);
         super.finalize();
     }
@@ -1075,6 +1097,107 @@ public class Mat {
         throw new java.lang.UnsupportedOperationException("Mat data type is not compatible: " + t);
     }
 
+    // Bulk ByteBuffer access to CV_8U/CV_8S Mats. The buffer's position is advanced by the number of bytes copied.
+    // Heap buffers starting at the beginning of their array are copied straight through JNI, anything else
+    // (direct buffers, slices, offsets) goes through a reusable per-thread scratch array.
+
+    // javadoc:Mat::put(row,col,data)
+    public int put(int row, int col, java.nio.ByteBuffer data) {
+        checkByteBuffer(data);
+        return putBuffer(row, col, data, data.remaining());
+    }
+
+    // javadoc:Mat::get(row,col,data)
+    public int get(int row, int col, java.nio.ByteBuffer data) {
+        checkByteBuffer(data);
+        return getBuffer(row, col, data, data.remaining());
+    }
+
+    // javadoc:Mat::put(rowRange,data)
+    public int put(Range rowRange, java.nio.ByteBuffer data) {
+        checkByteBuffer(data);
+        int count = Math.min(data.remaining(), rowRange.size() * cols() * CvType.channels(type()));
+        return putBuffer(rowRange.start, 0, data, count);
+    }
+
+    // javadoc:Mat::get(rowRange,data)
+    public int get(Range rowRange, java.nio.ByteBuffer data) {
+        checkByteBuffer(data);
+        int count = Math.min(data.remaining(), rowRange.size() * cols() * CvType.channels(type()));
+        return getBuffer(rowRange.start, 0, data, count);
+    }
+
+    // javadoc:Mat::put(roi,data)
+    public int put(Rect roi, java.nio.ByteBuffer data) {
+        checkByteBuffer(data);
+        int rowBytes = roi.width * CvType.channels(type());
+        int res = 0;
+        for (int y = roi.y; y < roi.y + roi.height && data.remaining() >= rowBytes; y++)
+            res += putBuffer(y, roi.x, data, rowBytes);
+        return res;
+    }
+
+    // javadoc:Mat::get(roi,data)
+    public int get(Rect roi, java.nio.ByteBuffer data) {
+        checkByteBuffer(data);
+        int rowBytes = roi.width * CvType.channels(type());
+        int res = 0;
+        for (int y = roi.y; y < roi.y + roi.height && data.remaining() >= rowBytes; y++)
+            res += getBuffer(y, roi.x, data, rowBytes);
+        return res;
+    }
+
+    private static final ThreadLocal<byte[]> sBufferScratch = new ThreadLocal<byte[]>();
+
+    private static byte[] bufferScratch(int count) {
+        byte[] scratch = sBufferScratch.get();
+        if (scratch == null || scratch.length < count) {
+            scratch = new byte[count];
+            sBufferScratch.set(scratch);
+        }
+        return scratch;
+    }
+
+    private void checkByteBuffer(java.nio.ByteBuffer data) {
+        int t = type();
+        if (data == null || data.remaining() % CvType.channels(t) != 0)
+            throw new java.lang.UnsupportedOperationException(
+                    "Provided data element number (" +
+                            (data == null ? 0 : data.remaining()) +
+                            ") should be multiple of the Mat channels count (" +
+                            CvType.channels(t) + ")");
+        if (CvType.depth(t) != CvType.CV_8U && CvType.depth(t) != CvType.CV_8S)
+            throw new java.lang.UnsupportedOperationException("Mat data type is not compatible: " + t);
+    }
+
+    private int putBuffer(int row, int col, java.nio.ByteBuffer data, int count) {
+        int start = data.position();
+        int res;
+        if (data.hasArray() && data.arrayOffset() + start == 0) {
+            res = nPutB(nativeObj, row, col, count, data.array());
+        } else {
+            byte[] scratch = bufferScratch(count);
+            data.get(scratch, 0, count);
+            res = nPutB(nativeObj, row, col, count, scratch);
+        }
+        data.position(start + res);
+        return res;
+    }
+
+    private int getBuffer(int row, int col, java.nio.ByteBuffer data, int count) {
+        int start = data.position();
+        int res;
+        if (data.hasArray() && !data.isReadOnly() && data.arrayOffset() + start == 0) {
+            res = nGetB(nativeObj, row, col, count, data.array());
+        } else {
+            byte[] scratch = bufferScratch(count);
+            res = nGetB(nativeObj, row, col, count, scratch);
+            data.put(scratch, 0, res);
+        }
+        data.position(start + res);
+        return res;
+    }
+
     // javadoc:Mat::get(row,col)
     public double[] get(int row, int col) {
         return nGet(nativeObj, row, col);
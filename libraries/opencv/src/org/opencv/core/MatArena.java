@@ -0,0 +1,84 @@
+package org.opencv.core;
+
+import java.util.ArrayList;
+
+/**
+ * Pool of Mats for temporaries that only live for one scope, e.g. the processing of one frame:
+ *
+ *     arena.begin();
+ *     Mat gray = arena.obtain();
+ *     List<MatOfPoint> contours = ...;
+ *     for (MatOfPoint c : contours) arena.track(c);
+ *     ...
+ *     arena.end();
+ *
+ * obtain() hands out the same Mats in the same order every scope, so their native buffers are
+ * reused instead of being reallocated and left to the finalizer. Mats created elsewhere can be
+ * handed to track(), they are released at the end of the scope. release() frees everything.
+ * An arena is meant to be used by one thread at a time.
+ */
+public class MatArena {
+
+    private final ArrayList<Mat> mPool = new ArrayList<Mat>();
+    private final ArrayList<Mat> mTracked = new ArrayList<Mat>();
+    private int mUsed;
+    private boolean mInScope;
+
+    public void begin() {
+        if (mInScope)
+            throw new IllegalStateException("MatArena scope already open");
+        mInScope = true;
+        mUsed = 0;
+    }
+
+    /**
+     * This method returns a pooled Mat for the current scope, its content is whatever the previous scope left in it
+     */
+    public Mat obtain() {
+        checkScope();
+        if (mUsed == mPool.size())
+            mPool.add(new Mat());
+        return mPool.get(mUsed++);
+    }
+
+    /**
+     * Releases m at the end of the current scope
+     * @return m, for chaining
+     */
+    public <T extends Mat> T track(T m) {
+        checkScope();
+        mTracked.add(m);
+        return m;
+    }
+
+    /**
+     * Closes the scope: tracked Mats are released, pooled ones keep their buffers for the next scope
+     */
+    public void end() {
+        checkScope();
+        for (int i = 0; i < mTracked.size(); i++)
+            mTracked.get(i).release();
+        mTracked.clear();
+        mInScope = false;
+    }
+
+    /**
+     * Frees all pooled Mats, the arena may be used again afterwards
+     */
+    public void release() {
+        if (mInScope)
+            end();
+        for (int i = 0; i < mPool.size(); i++)
+            mPool.get(i).release();
+        mPool.clear();
+    }
+
+    public int getPooledCount() {
+        return mPool.size();
+    }
+
+    private void checkScope() {
+        if (!mInScope)
+            throw new IllegalStateException("MatArena used outside of begin()/end()");
+    }
+}
@@ -66,6 +66,76 @@ public class MatOfPoint extends Mat {
         return ap;
     }
 
+    // Reused by the scratch variants below so converting a contour every frame doesn't allocate
+    private int[] mBuff;
+
+    private int[] scratch(int size) {
+        if (mBuff == null || mBuff.length < size)
+            mBuff = new int[size];
+        return mBuff;
+    }
+
+    /**
+     * Fills the Mat from interleaved coordinates x0, y0, x1, y1, ... without any boxing
+     */
+    public void fromArray(int[] xy, int count) {
+        if (count <= 0)
+            return;
+        if (xy.length % _channels != 0 || xy.length < count * _channels)
+            throw new IllegalArgumentException("Expected an even length of at least " + count * _channels + ", got " + xy.length);
+        alloc(count);
+        put(0, 0, xy);
+    }
+
+    /**
+     * Copies the points as interleaved coordinates into xy
+     * @return number of points copied
+     */
+    public int toArray(int[] xy) {
+        int num = Math.min((int) total(), xy.length / _channels);
+        if (num == 0)
+            return 0;
+        if (xy.length % _channels != 0)
+            throw new IllegalArgumentException("Expected an even length, got " + xy.length);
+        get(0, 0, xy);
+        return num;
+    }
+
+    /**
+     * Same as fromArray(Point...) but reuses an internal buffer
+     */
+    public void fromArray(Point[] a, int count) {
+        if (count <= 0)
+            return;
+        alloc(count);
+        int[] buff = scratch(count * _channels);
+        for (int i = 0; i < count; i++) {
+            Point p = a[i];
+            buff[_channels*i+0] = (int) p.x;
+            buff[_channels*i+1] = (int) p.y;
+        }
+        put(0, 0, buff);
+    }
+
+    /**
+     * Same as toArray() but fills the given Points, creating the missing ones, and reuses an internal buffer
+     * @return number of points copied, at most dst.length
+     */
+    public int toArray(Point[] dst) {
+        int num = Math.min((int) total(), dst.length);
+        if (num == 0)
+            return 0;
+        int[] buff = scratch((int) total() * _channels);
+        get(0, 0, buff);
+        for (int i = 0; i < num; i++) {
+            if (dst[i] == null)
+                dst[i] = new Point();
+            dst[i].x = buff[i*_channels];
+            dst[i].y = buff[i*_channels+1];
+        }
+        return num;
+    }
+
     public void fromList(List<Point> lp) {
         Point ap[] = lp.toArray(new Point[0]);
         fromArray(ap);
@@ -0,0 +1,71 @@
+package org.opencv.core;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Debug helper counting the native Mats that are still allocated and the bytes they hold.
+ * Tracking is off by default and costs a flag check then; when enabled every Mat constructed
+ * afterwards is registered once its native object exists, and unregistered by release() or the
+ * finalizer. The tracker holds the unreleased Mats, so a Mat that is dropped without release()
+ * keeps counting instead of being freed unnoticed by the finalizer: a leak shows as a rising
+ * count. Headers sharing data (submat, copies of the same Mat) each count their full size.
+ */
+public class MatTracker {
+
+    static volatile boolean sEnabled = false;
+
+    private static final Set<Mat> sLive = Collections.newSetFromMap(new IdentityHashMap<Mat, Boolean>());
+
+    private MatTracker() {
+    }
+
+    /**
+     * Switches tracking on or off. Only Mats created while tracking is on are counted, switching
+     * it off forgets them so the finalizer can free them again.
+     */
+    public static synchronized void setEnabled(boolean enabled) {
+        sEnabled = enabled;
+        if (!enabled)
+            sLive.clear();
+    }
+
+    public static boolean isEnabled() {
+        return sEnabled;
+    }
+
+    // called by the Mat constructors after the native allocation succeeded
+    static synchronized void track(Mat m) {
+        if (sEnabled)
+            sLive.add(m);
+    }
+
+    // called by Mat.release() and Mat.finalize()
+    static synchronized void untrack(Mat m) {
+        sLive.remove(m);
+    }
+
+    /**
+     * This method returns the number of tracked Mats that were neither released nor finalized
+     */
+    public static synchronized int getLiveCount() {
+        return sLive.size();
+    }
+
+    /**
+     * This method returns the data size of all tracked Mats that were neither released nor finalized
+     */
+    public static long getLiveBytes() {
+        List<Mat> mats;
+        synchronized (MatTracker.class) {
+            mats = new ArrayList<Mat>(sLive);
+        }
+        long bytes = 0;
+        for (Mat m : mats)
+            bytes += m.total() * m.elemSize();
+        return bytes;
+    }
+}
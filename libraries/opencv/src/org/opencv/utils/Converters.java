@@ -1,5 +1,6 @@
 package org.opencv.utils;
 
+import java.nio.FloatBuffer;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -187,6 +188,61 @@ public class Converters {
         }
     }
 
+    // Array based variants of the point conversions: coordinates are interleaved as x0, y0, x1, y1, ...
+    // in caller owned arrays, so nothing is boxed and no scratch array is allocated per call.
+    // The destination Mat is (re)allocated only when its size or type changes.
+
+    public static void vector_Point_to_Mat(int[] xy, int count, Mat m) {
+        checkPointArray(xy == null ? -1 : xy.length, count);
+        m.create(count, 1, CvType.CV_32SC2);
+        if (count > 0)
+            m.put(0, 0, xy);
+    }
+
+    public static void vector_Point2f_to_Mat(float[] xy, int count, Mat m) {
+        checkPointArray(xy == null ? -1 : xy.length, count);
+        m.create(count, 1, CvType.CV_32FC2);
+        if (count > 0)
+            m.put(0, 0, xy);
+    }
+
+    public static int Mat_to_vector_Point(Mat m, int[] xy) {
+        int count = checkPointMat(m, CvType.CV_32SC2, xy == null ? -1 : xy.length);
+        if (count > 0)
+            m.get(0, 0, xy);
+        return count;
+    }
+
+    public static int Mat_to_vector_Point2f(Mat m, float[] xy) {
+        int count = checkPointMat(m, CvType.CV_32FC2, xy == null ? -1 : xy.length);
+        if (count > 0)
+            m.get(0, 0, xy);
+        return count;
+    }
+
+    private static void checkPointArray(int length, int count) {
+        if (length < 0)
+            throw new java.lang.IllegalArgumentException("Input array can't be null");
+        if (length % 2 != 0 || count < 0 || count * 2 > length)
+            throw new java.lang.IllegalArgumentException(
+                    "Input array should hold 2 * count coordinates and have an even length, count=" + count + ", length=" + length);
+    }
+
+    private static int checkPointMat(Mat m, int type, int length) {
+        if (length < 0)
+            throw new java.lang.IllegalArgumentException("Output array can't be null");
+        if (m.empty())
+            return 0;
+        if (m.cols() != 1 || m.type() != type)
+            throw new java.lang.IllegalArgumentException(
+                    "Input Mat should have one column and be of " + CvType.typeToString(type) + " type\n" + m);
+        int count = m.rows();
+        if (length % 2 != 0 || count * 2 > length)
+            throw new java.lang.IllegalArgumentException(
+                    "Output array should have an even length of at least " + count * 2 + ", got " + length);
+        return count;
+    }
+
     public static void Mat_to_vector_Point3i(Mat m, List<Point3> pts) {
         Mat_to_vector_Point3(m, pts);
     }
@@ -300,6 +356,78 @@ public class Converters {
         }
     }
 
+    public static void vector_float_to_Mat(float[] fs, int count, Mat m) {
+        if (fs == null || count < 0 || count > fs.length)
+            throw new java.lang.IllegalArgumentException(
+                    "Input array should hold count values, count=" + count + ", length=" + (fs == null ? 0 : fs.length));
+        m.create(count, 1, CvType.CV_32FC1);
+        if (count > 0)
+            m.put(0, 0, fs);
+    }
+
+    /**
+     * Copies the remaining values of fs into m, the buffer position is left unchanged
+     */
+    public static void vector_float_to_Mat(FloatBuffer fs, Mat m) {
+        if (fs == null)
+            throw new java.lang.IllegalArgumentException("fs == null");
+        int count = fs.remaining();
+        if (fs.hasArray() && fs.arrayOffset() + fs.position() == 0) {
+            vector_float_to_Mat(fs.array(), count, m);
+        } else {
+            float[] buff = floatScratch(count);
+            fs.duplicate().get(buff, 0, count);
+            vector_float_to_Mat(buff, count, m);
+        }
+    }
+
+    public static int Mat_to_vector_float(Mat m, float[] fs) {
+        if (fs == null)
+            throw new java.lang.IllegalArgumentException("fs == null");
+        if (m.empty())
+            return 0;
+        int count = m.rows();
+        if (CvType.CV_32FC1 != m.type() || m.cols() != 1)
+            throw new java.lang.IllegalArgumentException(
+                    "CvType.CV_32FC1 != m.type() ||  m.cols()!=1\n" + m);
+        if (count > fs.length)
+            throw new java.lang.IllegalArgumentException("Output array should have at least " + count + " elements, got " + fs.length);
+        m.get(0, 0, fs);
+        return count;
+    }
+
+    /**
+     * Copies the values of m into fs starting at its position, which is advanced past them
+     */
+    public static int Mat_to_vector_float(Mat m, FloatBuffer fs) {
+        if (fs == null)
+            throw new java.lang.IllegalArgumentException("fs == null");
+        if (m.rows() > fs.remaining())
+            throw new java.lang.IllegalArgumentException("Output buffer should have at least " + m.rows() + " elements remaining, got " + fs.remaining());
+        int count;
+        if (fs.hasArray() && !fs.isReadOnly() && fs.arrayOffset() + fs.position() == 0) {
+            count = Mat_to_vector_float(m, fs.array());
+        } else {
+            float[] buff = floatScratch(m.rows());
+            count = Mat_to_vector_float(m, buff);
+            fs.put(buff, 0, count);
+            return count;
+        }
+        fs.position(fs.position() + count);
+        return count;
+    }
+
+    private static final ThreadLocal<float[]> sFloatScratch = new ThreadLocal<float[]>();
+
+    private static float[] floatScratch(int count) {
+        float[] buff = sFloatScratch.get();
+        if (buff == null || buff.length < count) {
+            buff = new float[count];
+            sFloatScratch.set(buff);
+        }
+        return buff;
+    }
+
     public static Mat vector_uchar_to_Mat(List<Byte> bs) {
         Mat res;
         int count = (bs != null) ? bs.size() : 0;